@@ -0,0 +1,200 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps property types to the calls that read and write them on some target API, like a
+ * {@code Cursor}, {@code ContentValues} or {@code Parcel}. Primitives and their boxed types
+ * share the unboxed call, so values never go through {@code Object}.
+ *
+ * <p>Read formats get the target as {@code $1L} and the key as {@code $2L}, write formats
+ * additionally get the value as {@code $3L}:
+ * <pre>{@code
+ * AccessorTable cursor = AccessorTable.builder()
+ *     .read(TypeName.INT, "$1L.getInt($2L)")
+ *     .read(ClassName.get(String.class), "$1L.getString($2L)")
+ *     .readNull("$1L.isNull($2L)")
+ *     .build();
+ * }</pre>
+ */
+public final class AccessorTable {
+
+    private static final ImmutableList<TypeName> PRIMITIVES = ImmutableList.of(TypeName.BOOLEAN,
+            TypeName.BYTE, TypeName.SHORT, TypeName.INT, TypeName.LONG, TypeName.CHAR,
+            TypeName.FLOAT, TypeName.DOUBLE);
+
+    private final ImmutableMap<TypeName, String> reads;
+    private final ImmutableMap<TypeName, String> writes;
+    private final String readNull;
+    private final String writeNull;
+
+    private AccessorTable(Builder builder) {
+        this.reads = ImmutableMap.copyOf(builder.reads);
+        this.writes = ImmutableMap.copyOf(builder.writes);
+        this.readNull = builder.readNull;
+        this.writeNull = builder.writeNull;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean canRead(TypeName type) {
+        return reads.containsKey(unboxed(type));
+    }
+
+    public boolean canWrite(TypeName type) {
+        return writes.containsKey(unboxed(type));
+    }
+
+    /**
+     * Returns an expression reading a value of {@code type}. For {@code nullable} reference types
+     * it evaluates to {@code null} if the read-null check succeeds.
+     *
+     * @throws IllegalArgumentException if there is no read call for {@code type}, or
+     * {@code nullable} is set and no read-null check was configured.
+     */
+    public CodeBlock read(TypeName type, boolean nullable, Object target, Object key) {
+        String format = reads.get(unboxed(type));
+        if (format == null) {
+            throw new IllegalArgumentException("No read call for " + type);
+        }
+        CodeBlock read = format(format, target, key);
+        if (!nullable || type.isPrimitive()) {
+            return read;
+        }
+        if (readNull == null) {
+            throw new IllegalArgumentException("No read-null check for nullable " + type);
+        }
+        return CodeBlock.builder()
+                .add("(")
+                .add(format(readNull, target, key))
+                .add(" ? null : ")
+                .add(read)
+                .add(")")
+                .build();
+    }
+
+    /**
+     * Returns statements writing {@code value} of {@code type}. For {@code nullable} reference
+     * types {@code null} is written with the write-null call, or skipped if there is none.
+     * {@code value} is evaluated twice in that case, so it should be a local or a field.
+     *
+     * @throws IllegalArgumentException if there is no write call for {@code type}.
+     */
+    public CodeBlock write(TypeName type, boolean nullable, Object target, Object key,
+            Object value) {
+        String format = writes.get(unboxed(type));
+        if (format == null) {
+            throw new IllegalArgumentException("No write call for " + type);
+        }
+        if (!nullable || type.isPrimitive()) {
+            return CodeBlock.builder()
+                    .add("$[")
+                    .add(format(format, target, key, value))
+                    .add(";\n$]")
+                    .build();
+        }
+        CodeBlock.Builder write = CodeBlock.builder();
+        if (writeNull != null) {
+            write.beginControlFlow("if ($L == null)", value)
+                    .add("$[")
+                    .add(format(writeNull, target, key))
+                    .add(";\n$]")
+                    .nextControlFlow("else");
+        } else {
+            write.beginControlFlow("if ($L != null)", value);
+        }
+        return write.add("$[")
+                .add(format(format, target, key, value))
+                .add(";\n$]")
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * Formats with indexed arguments like {@code $1L}, which unlike JavaPoet doesn't require every
+     * argument to be used.
+     */
+    static CodeBlock format(String format, Object... args) {
+        StringBuilder positional = new StringBuilder(format.length());
+        List<Object> used = new ArrayList<>(args.length);
+        for (int i = 0, length = format.length(); i < length; i++) {
+            char c = format.charAt(i);
+            positional.append(c);
+            if (c != '$' || i + 1 == length) {
+                continue;
+            }
+            char next = format.charAt(++i);
+            if (Character.isDigit(next)) {
+                int index = next - '1';
+                if (index < 0 || index >= args.length) {
+                    throw new IllegalArgumentException("Invalid argument index in " + format);
+                }
+                used.add(args[index]);
+            } else {
+                positional.append(next);
+            }
+        }
+        return CodeBlock.builder().add(positional.toString(), used.toArray()).build();
+    }
+
+    private static TypeName unboxed(TypeName type) {
+        if (type.isPrimitive()) {
+            return type;
+        }
+        for (int i = 0, size = PRIMITIVES.size(); i < size; i++) {
+            TypeName primitive = PRIMITIVES.get(i);
+            if (primitive.box().equals(type)) {
+                return primitive;
+            }
+        }
+        return type;
+    }
+
+    public static final class Builder {
+
+        private final Map<TypeName, String> reads = new LinkedHashMap<>();
+        private final Map<TypeName, String> writes = new LinkedHashMap<>();
+        private String readNull;
+        private String writeNull;
+
+        private Builder() {
+        }
+
+        /** Registers the read call for {@code type}, for primitives also used for boxed types. */
+        public Builder read(TypeName type, String format) {
+            reads.put(type, format);
+            return this;
+        }
+
+        /** Registers the write call for {@code type}, for primitives also used for boxed types. */
+        public Builder write(TypeName type, String format) {
+            writes.put(type, format);
+            return this;
+        }
+
+        /** A boolean expression that is true if the value at {@code $2L} is {@code null}. */
+        public Builder readNull(String format) {
+            this.readNull = format;
+            return this;
+        }
+
+        /** A statement that writes {@code null} at {@code $2L}. */
+        public Builder writeNull(String format) {
+            this.writeNull = format;
+            return this;
+        }
+
+        public AccessorTable build() {
+            return new AccessorTable(this);
+        }
+    }
+}
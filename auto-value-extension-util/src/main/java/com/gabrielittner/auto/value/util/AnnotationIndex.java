@@ -0,0 +1,103 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.value.extension.AutoValueExtension.Context;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.Map;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * The annotations of all properties of an {@code @AutoValue} class, indexed by both their simple
+ * and their qualified name.
+ */
+public final class AnnotationIndex {
+
+    private static final Interner<String> NAMES = Interners.newWeakInterner();
+
+    // dropped by RoundTracker after every round, indexes reference the elements they were built for
+    private static final Cache<TypeElement, AnnotationIndex> INDEXES = CacheBuilder.newBuilder()
+            .maximumSize(1024)
+            .build();
+
+    private final Map<String, ExecutableElement> properties;
+    private final ImmutableSetMultimap<String, String> propertiesByAnnotation;
+    private final ImmutableSetMultimap<String, String> annotationsByProperty;
+
+    private AnnotationIndex(Map<String, ExecutableElement> properties,
+            ImmutableSetMultimap<String, String> propertiesByAnnotation,
+            ImmutableSetMultimap<String, String> annotationsByProperty) {
+        this.properties = properties;
+        this.propertiesByAnnotation = propertiesByAnnotation;
+        this.annotationsByProperty = annotationsByProperty;
+    }
+
+    /**
+     * Returns the index for the properties of {@code context}. It is built once and shared by all
+     * extensions that ask for the same {@code @AutoValue} class.
+     */
+    public static AnnotationIndex get(Context context) {
+        TypeElement autoValueClass = context.autoValueClass();
+        Map<String, ExecutableElement> properties = context.properties();
+        AnnotationIndex index = INDEXES.getIfPresent(autoValueClass);
+        // properties are replaced when an extension consumes some of them
+        if (index == null || index.properties != properties) {
+            index = of(properties);
+            INDEXES.put(autoValueClass, index);
+        }
+        return index;
+    }
+
+    static AnnotationIndex of(Map<String, ExecutableElement> properties) {
+        ImmutableSetMultimap.Builder<String, String> propertiesByAnnotation =
+                ImmutableSetMultimap.builder();
+        ImmutableSetMultimap.Builder<String, String> annotationsByProperty =
+                ImmutableSetMultimap.builder();
+        for (Map.Entry<String, ExecutableElement> entry : properties.entrySet()) {
+            String property = NAMES.intern(entry.getKey());
+            for (AnnotationMirror annotation : entry.getValue().getAnnotationMirrors()) {
+                TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+                String simpleName = NAMES.intern(type.getSimpleName().toString());
+                String qualifiedName = NAMES.intern(type.getQualifiedName().toString());
+                propertiesByAnnotation.put(simpleName, property);
+                propertiesByAnnotation.put(qualifiedName, property);
+                annotationsByProperty.put(property, simpleName);
+            }
+        }
+        return new AnnotationIndex(properties, propertiesByAnnotation.build(),
+                annotationsByProperty.build());
+    }
+
+    static void invalidateAll() {
+        INDEXES.invalidateAll();
+    }
+
+    /**
+     * Returns the names of the properties annotated with {@code annotation}, which may be a
+     * simple or a qualified name.
+     */
+    public ImmutableSet<String> propertiesWithAnnotation(String annotation) {
+        return propertiesByAnnotation.get(annotation);
+    }
+
+    /**
+     * Returns true if {@code property} is annotated with {@code annotation}, which may be a
+     * simple or a qualified name.
+     */
+    public boolean hasAnnotation(String property, String annotation) {
+        return propertiesByAnnotation.containsEntry(annotation, property);
+    }
+
+    /**
+     * Returns the simple names of the annotations of {@code property}, like
+     * {@link ElementUtil#buildAnnotations(ExecutableElement)}.
+     */
+    public ImmutableSet<String> annotations(String property) {
+        return annotationsByProperty.get(property);
+    }
+}
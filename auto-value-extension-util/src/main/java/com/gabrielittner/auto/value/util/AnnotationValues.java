@@ -0,0 +1,115 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.common.AnnotationMirrors;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.SimpleAnnotationValueVisitor7;
+
+/**
+ * An immutable snapshot of all element values of an annotation, defaults included. Values are
+ * boxed primitives, {@link String}s, {@link TypeMirror}s for class literals, enum constant names,
+ * nested {@link AnnotationValues} and {@link List}s of those for arrays.
+ */
+public final class AnnotationValues {
+
+    private static final ValueVisitor VALUE_VISITOR = new ValueVisitor();
+
+    private final ImmutableMap<String, Object> values;
+
+    private AnnotationValues(ImmutableMap<String, Object> values) {
+        this.values = values;
+    }
+
+    public static AnnotationValues of(AnnotationMirror annotation) {
+        ImmutableMap.Builder<String, Object> values = ImmutableMap.builder();
+        Map<ExecutableElement, AnnotationValue> elementValues =
+                AnnotationMirrors.getAnnotationValuesWithDefaults(annotation);
+        for (Map.Entry<ExecutableElement, AnnotationValue> entry : elementValues.entrySet()) {
+            String key = entry.getKey().getSimpleName().toString();
+            values.put(key, entry.getValue().accept(VALUE_VISITOR, null));
+        }
+        return new AnnotationValues(values.build());
+    }
+
+    public ImmutableMap<String, Object> asMap() {
+        return values;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the annotation has no element named {@code key}.
+     */
+    public Object get(String key) {
+        Object value = values.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("No element named " + key);
+        }
+        return value;
+    }
+
+    public String getString(String key) {
+        return (String) get(key);
+    }
+
+    public boolean getBoolean(String key) {
+        return (Boolean) get(key);
+    }
+
+    public int getInt(String key) {
+        return (Integer) get(key);
+    }
+
+    public long getLong(String key) {
+        return (Long) get(key);
+    }
+
+    public TypeMirror getType(String key) {
+        return (TypeMirror) get(key);
+    }
+
+    public AnnotationValues getAnnotation(String key) {
+        return (AnnotationValues) get(key);
+    }
+
+    public List<?> getList(String key) {
+        return (List<?>) get(key);
+    }
+
+    @Override public String toString() {
+        return values.toString();
+    }
+
+    private static final class ValueVisitor extends SimpleAnnotationValueVisitor7<Object, Void> {
+
+        @Override protected Object defaultAction(Object o, Void p) {
+            // boxed primitives and strings
+            return o;
+        }
+
+        @Override public Object visitType(TypeMirror t, Void p) {
+            return t;
+        }
+
+        @Override public Object visitEnumConstant(VariableElement c, Void p) {
+            return c.getSimpleName().toString();
+        }
+
+        @Override public Object visitAnnotation(AnnotationMirror a, Void p) {
+            return of(a);
+        }
+
+        @Override public Object visitArray(List<? extends AnnotationValue> vals, Void p) {
+            ImmutableList.Builder<Object> builder = ImmutableList.builder();
+            for (AnnotationValue value : vals) {
+                builder.add(value.accept(this, p));
+            }
+            return builder.build();
+        }
+    }
+}
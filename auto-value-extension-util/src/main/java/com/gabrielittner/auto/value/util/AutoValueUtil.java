@@ -1,21 +1,27 @@
 package com.gabrielittner.auto.value.util;
 
 import com.google.auto.value.extension.AutoValueExtension.Context;
-import com.google.common.collect.Lists;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import com.squareup.javapoet.TypeVariableName;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import javax.lang.model.element.ExecutableElement;
-import javax.lang.model.element.TypeElement;
-import javax.lang.model.element.TypeParameterElement;
+import java.util.Set;
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.JavaFileObject;
 
 import static javax.lang.model.element.Modifier.ABSTRACT;
 import static javax.lang.model.element.Modifier.FINAL;
@@ -38,43 +44,60 @@ public final class AutoValueUtil {
         return ClassName.get(context.packageName(), getFinalClassSimpleName(context));
     }
 
+    /** Returns the {@code @AutoValue} class, parameterized with its type variables. */
+    public static TypeName getAutoValueClassTypeName(PropertyModel model) {
+        List<TypeVariableName> typeVariables = model.typeVariables();
+        if (typeVariables.isEmpty()) {
+            return model.autoValueClass();
+        }
+        return ParameterizedTypeName.get(model.autoValueClass(),
+                typeVariables.toArray(new TypeName[typeVariables.size()]));
+    }
+
+    public static ClassName getFinalClassClassName(PropertyModel model) {
+        return model.autoValueClass().peerClass("AutoValue_" + model.autoValueClass().simpleName());
+    }
+
     public static TypeSpec.Builder newTypeSpecBuilder(Context context, String className,
             String classToExtend, boolean isFinal) {
-        TypeVariableName[] typeVariables = getTypeVariables(context.autoValueClass());
-        return TypeSpec.classBuilder(className)
-                .addModifiers(isFinal ? FINAL : ABSTRACT)
-                .addTypeVariables(Arrays.asList(typeVariables))
-                .superclass(getSuperClass(context.packageName(), classToExtend, typeVariables))
-                .addMethod(newConstructor(context.properties()));
+        return newTypeSpecBuilder(PropertyModel.get(context), className, classToExtend, isFinal);
     }
 
-    private static TypeVariableName[] getTypeVariables(TypeElement autoValueClass) {
-        List<? extends TypeParameterElement> parameters = autoValueClass.getTypeParameters();
-        TypeVariableName[] typeVariables = new TypeVariableName[parameters.size()];
-        for (int i = 0, length = typeVariables.length; i < length; i++) {
-            typeVariables[i] = TypeVariableName.get(parameters.get(i));
-        }
-        return typeVariables;
+    /**
+     * Like {@link #newTypeSpecBuilder(Context, String, String, boolean)}, but only uses the
+     * detached {@code model}, so it can be called from any thread.
+     */
+    public static TypeSpec.Builder newTypeSpecBuilder(PropertyModel model, String className,
+            String classToExtend, boolean isFinal) {
+        List<TypeVariableName> typeVariables = model.typeVariables();
+        return TypeSpec.classBuilder(className)
+                .addModifiers(isFinal ? FINAL : ABSTRACT)
+                .addTypeVariables(typeVariables)
+                .superclass(getSuperClass(model.packageName(), classToExtend, typeVariables))
+                .addMethod(model.constructor());
     }
 
     private static TypeName getSuperClass(String packageName, String classToExtend,
-            TypeName[] typeVariables) {
+            List<TypeVariableName> typeVariables) {
         ClassName superClassWithoutParameters = ClassName.get(packageName, classToExtend);
-        if (typeVariables.length > 0) {
-            return ParameterizedTypeName.get(superClassWithoutParameters, typeVariables);
+        if (!typeVariables.isEmpty()) {
+            TypeName[] typeArguments = typeVariables.toArray(new TypeName[typeVariables.size()]);
+            return ParameterizedTypeName.get(superClassWithoutParameters, typeArguments);
         } else {
             return superClassWithoutParameters;
         }
     }
 
-    private static MethodSpec newConstructor(Map<String, ExecutableElement> properties) {
-        List<ParameterSpec> params = Lists.newArrayList();
-        for (Map.Entry<String, ExecutableElement> entry : properties.entrySet()) {
-            TypeName typeName = TypeName.get(entry.getValue().getReturnType());
-            params.add(ParameterSpec.builder(typeName, entry.getKey()).build());
+    static MethodSpec newConstructor(Collection<PropertyModel.Property> properties) {
+        List<ParameterSpec> params = new ArrayList<>(properties.size());
+        Object[] names = new Object[properties.size()];
+        int i = 0;
+        for (PropertyModel.Property property : properties) {
+            params.add(ParameterSpec.builder(property.type(), property.name()).build());
+            names[i++] = property.name();
         }
 
-        CodeBlock code = newConstructorCall(CodeBlock.of("super"), properties.keySet().toArray());
+        CodeBlock code = newConstructorCall(CodeBlock.of("super"), names);
 
         return MethodSpec.constructorBuilder()
                 .addParameters(params)
@@ -87,19 +110,85 @@ public final class AutoValueUtil {
         return newConstructorCall(constructorName, properties);
     }
 
+    /**
+     * Returns a call of the final AutoValue class' constructor with {@code properties}. The final
+     * class is package private, so code containing the call has to be generated into the package
+     * of the {@code @AutoValue} class.
+     */
+    public static CodeBlock newFinalClassConstructorCall(PropertyModel model,
+            Object[] properties) {
+        CodeBlock constructorName = CodeBlock.of("new $T", getFinalClassClassName(model));
+        return newConstructorCall(constructorName, properties);
+    }
+
+    // Emits the arguments as a single literal instead of a "$N, $N, ..." format, so JavaPoet
+    // doesn't have to parse a placeholder for every property of wide classes.
     private static CodeBlock newConstructorCall(CodeBlock constructorName, Object[] properties) {
-        StringBuilder params = new StringBuilder("(");
-        for (int i = properties.length; i > 0; i--) {
-            params.append("$N");
-            if (i > 1) params.append(", ");
+        int capacity = 2;
+        String[] names = new String[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            names[i] = name(properties[i]);
+            capacity += names[i].length() + 2;
+        }
+        StringBuilder params = new StringBuilder(capacity).append('(');
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) params.append(", ");
+            params.append(names[i]);
         }
-        params.append(")");
+        params.append(')');
         return CodeBlock.builder()
                 .add(constructorName)
-                .addStatement(params.toString(), properties)
+                .addStatement("$L", params.toString())
                 .build();
     }
 
+    // the same conversion JavaPoet applies to $N arguments
+    private static String name(Object o) {
+        if (o instanceof CharSequence) return o.toString();
+        if (o instanceof ParameterSpec) return ((ParameterSpec) o).name;
+        if (o instanceof FieldSpec) return ((FieldSpec) o).name;
+        if (o instanceof MethodSpec) return ((MethodSpec) o).name;
+        if (o instanceof TypeSpec) return ((TypeSpec) o).name;
+        throw new IllegalArgumentException("expected name but was " + o);
+    }
+
+    /**
+     * Writes {@code javaFile} with the {@link Filer} of {@code context}. The {@code @AutoValue}
+     * class, the originating elements of the file's type and {@code originatingElements} are
+     * recorded as the file's origin, which incremental builds need to track generated files.
+     */
+    public static void writeJavaFile(Context context, JavaFile javaFile,
+            Element... originatingElements) throws IOException {
+        List<Element> elements = new ArrayList<>(originatingElements.length + 1);
+        elements.add(context.autoValueClass());
+        Collections.addAll(elements, originatingElements);
+        writeJavaFile(context.processingEnvironment().getFiler(), javaFile, elements);
+    }
+
+    /**
+     * Writes {@code javaFile} with {@code filer}, recording the originating elements of the file's
+     * type and {@code originatingElements} as its origin. Use this for files that aggregate
+     * several {@code @AutoValue} classes.
+     */
+    public static void writeJavaFile(Filer filer, JavaFile javaFile,
+            Iterable<? extends Element> originatingElements) throws IOException {
+        Set<Element> elements = new LinkedHashSet<>(javaFile.typeSpec.originatingElements);
+        for (Element element : originatingElements) {
+            elements.add(element);
+        }
+        String name = javaFile.packageName.isEmpty()
+                ? javaFile.typeSpec.name
+                : javaFile.packageName + "." + javaFile.typeSpec.name;
+        JavaFileObject file =
+                filer.createSourceFile(name, elements.toArray(new Element[elements.size()]));
+        try (Writer writer = file.openWriter()) {
+            javaFile.writeTo(writer);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
     private AutoValueUtil() {
         throw new AssertionError("No instances.");
     }
@@ -0,0 +1,223 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Generates a binary codec for AutoValue classes whose properties are all primitives or
+ * {@code String}s. Primitives are written first at fixed offsets, so their combined width is
+ * known at compile time and emitted as {@code FIXED_SIZE}. Strings follow as an {@code int}
+ * length, {@code -1} for {@code null}, and their UTF-16 chars:
+ * <pre>{@code
+ * final class TestCodec {
+ *   static final int FIXED_SIZE = 12;
+ *
+ *   static int sizeOf(Test value) { ... }
+ *   static void write(Test value, ByteBuffer buffer) { ... }
+ *   static Test read(ByteBuffer buffer) { ... }
+ * }
+ * }</pre>
+ * Reads and writes go straight to the buffer, decoding a string only allocates its chars.
+ * {@code read} creates instances with
+ * {@link AutoValueUtil#newFinalClassConstructorCall(PropertyModel, Object[])}.
+ */
+public final class ByteBufferCodecGenerator {
+
+    private static final TypeName STRING = ClassName.get(String.class);
+
+    private static final ImmutableMap<TypeName, Integer> WIDTHS =
+            ImmutableMap.<TypeName, Integer>builder()
+                    .put(TypeName.BOOLEAN, 1)
+                    .put(TypeName.BYTE, 1)
+                    .put(TypeName.SHORT, 2)
+                    .put(TypeName.CHAR, 2)
+                    .put(TypeName.INT, 4)
+                    .put(TypeName.FLOAT, 4)
+                    .put(TypeName.LONG, 8)
+                    .put(TypeName.DOUBLE, 8)
+                    .build();
+
+    // the ByteBuffer methods are named after the type, apart from byte and boolean
+    private static final ImmutableMap<TypeName, String> SUFFIXES =
+            ImmutableMap.<TypeName, String>builder()
+                    .put(TypeName.BYTE, "")
+                    .put(TypeName.SHORT, "Short")
+                    .put(TypeName.CHAR, "Char")
+                    .put(TypeName.INT, "Int")
+                    .put(TypeName.FLOAT, "Float")
+                    .put(TypeName.LONG, "Long")
+                    .put(TypeName.DOUBLE, "Double")
+                    .build();
+
+    /** Returns whether every property of {@code model} is a primitive or a {@code String}. */
+    public static boolean supports(PropertyModel model) {
+        for (PropertyModel.Property property : model.properties().values()) {
+            if (!supports(property.type())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean supports(TypeName type) {
+        return WIDTHS.containsKey(type) || STRING.equals(type);
+    }
+
+    /** Returns the bytes written for the primitive properties of {@code model}. */
+    public static int fixedSize(PropertyModel model) {
+        int size = 0;
+        for (PropertyModel.Property property : model.properties().values()) {
+            Integer width = WIDTHS.get(property.type());
+            if (width != null) {
+                size += width;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Generates the codec for {@code model}.
+     *
+     * @throws IllegalArgumentException if a property isn't a primitive or a {@code String}.
+     */
+    public static TypeSpec generate(PropertyModel model, String className) {
+        Collection<PropertyModel.Property> properties = model.properties().values();
+        List<PropertyModel.Property> fixed = new ArrayList<>(properties.size());
+        List<PropertyModel.Property> strings = new ArrayList<>(properties.size());
+        for (PropertyModel.Property property : properties) {
+            if (WIDTHS.containsKey(property.type())) {
+                fixed.add(property);
+            } else if (STRING.equals(property.type())) {
+                strings.add(property);
+            } else {
+                throw new IllegalArgumentException("Can't encode " + property + " of "
+                        + model.autoValueClass() + ", only primitives and Strings are supported");
+            }
+        }
+
+        TypeName valueType = AutoValueUtil.getAutoValueClassTypeName(model);
+        String buffer = "buffer";
+        while (model.properties().containsKey(buffer)) {
+            buffer = "_" + buffer;
+        }
+        FieldSpec fixedSize = FieldSpec.builder(TypeName.INT, "FIXED_SIZE", STATIC, FINAL)
+                .initializer("$L", fixedSize(model))
+                .build();
+
+        MethodSpec.Builder sizeOf = MethodSpec.methodBuilder("sizeOf")
+                .addModifiers(STATIC)
+                .addTypeVariables(model.typeVariables())
+                .returns(TypeName.INT)
+                .addParameter(valueType, "value");
+        if (strings.isEmpty()) {
+            sizeOf.addStatement("return $N", fixedSize);
+        } else {
+            sizeOf.addCode("return $N", fixedSize);
+            for (PropertyModel.Property property : strings) {
+                sizeOf.addCode("\n$>$>+ stringSize(value.$N())$<$<", property.methodName());
+            }
+            sizeOf.addCode(";\n");
+        }
+
+        MethodSpec.Builder write = MethodSpec.methodBuilder("write")
+                .addModifiers(STATIC)
+                .addTypeVariables(model.typeVariables())
+                .addParameter(valueType, "value")
+                .addParameter(ByteBuffer.class, buffer);
+        MethodSpec.Builder read = MethodSpec.methodBuilder("read")
+                .addModifiers(STATIC)
+                .addTypeVariables(model.typeVariables())
+                .returns(valueType)
+                .addParameter(ByteBuffer.class, buffer);
+        for (PropertyModel.Property property : fixed) {
+            TypeName type = property.type();
+            if (type.equals(TypeName.BOOLEAN)) {
+                write.addStatement("$N.put(value.$N() ? (byte) 1 : (byte) 0)", buffer,
+                        property.methodName());
+                read.addStatement("$T $N = $N.get() != 0", type, property.name(), buffer);
+            } else {
+                String suffix = SUFFIXES.get(type);
+                write.addStatement("$N.put$L(value.$N())", buffer, suffix,
+                        property.methodName());
+                read.addStatement("$T $N = $N.get$L()", type, property.name(), buffer, suffix);
+            }
+        }
+        for (PropertyModel.Property property : strings) {
+            write.addStatement("writeString($N, value.$N())", buffer, property.methodName());
+            read.addStatement("$T $N = readString($N)", STRING, property.name(), buffer);
+        }
+        Object[] names = new Object[properties.size()];
+        int i = 0;
+        for (PropertyModel.Property property : properties) {
+            names[i++] = property.name();
+        }
+        read.addCode("return ").addCode(AutoValueUtil.newFinalClassConstructorCall(model, names));
+
+        TypeSpec.Builder codec = TypeSpec.classBuilder(className)
+                .addModifiers(FINAL)
+                .addField(fixedSize)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(PRIVATE)
+                        .build())
+                .addMethod(sizeOf.build())
+                .addMethod(write.build())
+                .addMethod(read.build());
+        if (!strings.isEmpty()) {
+            addStringMethods(codec);
+        }
+        return codec.build();
+    }
+
+    private static void addStringMethods(TypeSpec.Builder codec) {
+        codec.addMethod(MethodSpec.methodBuilder("stringSize")
+                .addModifiers(PRIVATE, STATIC)
+                .returns(TypeName.INT)
+                .addParameter(STRING, "value")
+                .addStatement("return value != null ? 4 + 2 * value.length() : 4")
+                .build());
+        codec.addMethod(MethodSpec.methodBuilder("writeString")
+                .addModifiers(PRIVATE, STATIC)
+                .addParameter(ByteBuffer.class, "buffer")
+                .addParameter(STRING, "value")
+                .beginControlFlow("if (value == null)")
+                .addStatement("buffer.putInt(-1)")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("int length = value.length()")
+                .addStatement("buffer.putInt(length)")
+                .beginControlFlow("for (int i = 0; i < length; i++)")
+                .addStatement("buffer.putChar(value.charAt(i))")
+                .endControlFlow()
+                .build());
+        codec.addMethod(MethodSpec.methodBuilder("readString")
+                .addModifiers(PRIVATE, STATIC)
+                .returns(STRING)
+                .addParameter(ByteBuffer.class, "buffer")
+                .addStatement("int length = buffer.getInt()")
+                .beginControlFlow("if (length < 0)")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("char[] chars = new char[length]")
+                .beginControlFlow("for (int i = 0; i < length; i++)")
+                .addStatement("chars[i] = buffer.getChar()")
+                .endControlFlow()
+                .addStatement("return new $T(chars)", STRING)
+                .build());
+    }
+
+    private ByteBufferCodecGenerator() {
+        throw new AssertionError("No instances.");
+    }
+}
@@ -3,40 +3,141 @@ package com.gabrielittner.auto.value.util;
 import com.google.auto.common.AnnotationMirrors;
 import com.google.auto.common.MoreElements;
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.WildcardTypeName;
 import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
-import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
-
-import static com.google.auto.common.MoreElements.getLocalAndInheritedMethods;
+import javax.lang.model.util.Types;
 
 public final class ElementUtil {
 
+    private static final int METHOD_CACHE_SIZE = 4096;
+
+    // Scoped to the Elements instance of a compilation, so elements of one compilation are never
+    // looked up in or kept alive by another one. RoundTracker drops them after every round.
+    private static final LoadingCache<Elements, ElementCaches> ELEMENT_CACHES =
+            CacheBuilder.newBuilder()
+                    .weakKeys()
+                    .build(new CacheLoader<Elements, ElementCaches>() {
+                        @Override public ElementCaches load(Elements elements) {
+                            return new ElementCaches();
+                        }
+                    });
+
+    // the compilation used by lookups that only get an element
+    private static volatile WeakReference<Elements> currentElements =
+            new WeakReference<>(null);
+
+    // Scoped to the Types instance of a compilation so relations never leak into another one.
+    // RoundTracker also clears them after every round, since mirrors are replaced each round.
+    private static final LoadingCache<Types, Cache<TypeRelation, Boolean>> TYPE_RELATIONS =
+            CacheBuilder.newBuilder()
+                    .weakKeys()
+                    .build(new CacheLoader<Types, Cache<TypeRelation, Boolean>>() {
+                        @Override public Cache<TypeRelation, Boolean> load(Types types) {
+                            return CacheBuilder.newBuilder()
+                                    .maximumSize(4 * METHOD_CACHE_SIZE)
+                                    .recordStats()
+                                    .build();
+                        }
+                    });
+
+    private static final class ElementCaches {
+        final Cache<TypeElement, ImmutableSet<ExecutableElement>> inheritedMethods =
+                newElementCache();
+        final Cache<TypeElement, ImmutableList<ExecutableElement>> localMethods =
+                newElementCache();
+        final Cache<TypeElement, MethodIndex> localMethodIndex = newElementCache();
+        final Cache<TypeElement, MethodIndex> inheritedMethodIndex = newElementCache();
+        final Cache<Element, ConcurrentMap<Class<?>, Optional<AnnotationValues>>>
+                annotationValues = newElementCache();
+        // ordered by ClassName.compareTo, which unlike its hashCode doesn't render the name
+        final Set<ClassName> existingTypes = new ConcurrentSkipListSet<>();
+        final Set<ClassName> missingTypes = new ConcurrentSkipListSet<>();
+        // whether RoundTracker runs in this compilation, only then missing types are cached
+        volatile boolean tracked;
+
+        void invalidateAll() {
+            inheritedMethods.invalidateAll();
+            localMethods.invalidateAll();
+            localMethodIndex.invalidateAll();
+            inheritedMethodIndex.invalidateAll();
+            annotationValues.invalidateAll();
+            // found types stay, missing ones could be generated in the next round
+            missingTypes.clear();
+        }
+    }
+
+    // Elements reference the Elements instance of their compilation, so keys are weak and values
+    // soft. Otherwise the entry in ELEMENT_CACHES would keep its own weak key alive.
+    private static <K, V> Cache<K, V> newElementCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(METHOD_CACHE_SIZE)
+                .weakKeys()
+                .softValues()
+                .recordStats()
+                .build();
+    }
+
+    private static ElementCaches caches(Elements elements) {
+        if (currentElements.get() != elements) {
+            currentElements = new WeakReference<>(elements);
+        }
+        return ELEMENT_CACHES.getUnchecked(elements);
+    }
+
+    // the caches of the compilation whose Elements were used last, null if there is none
+    private static ElementCaches currentCaches() {
+        Elements elements = currentElements.get();
+        return elements != null ? ELEMENT_CACHES.getUnchecked(elements) : null;
+    }
+
+    /**
+     * Called by RoundTracker, which clears the caches of {@code elements}' compilation every
+     * round. Lookups that only get an element, like {@link #getLocalMethods(TypeElement)}, use
+     * that compilation's caches afterwards and missing types are cached until the next round.
+     */
+    static void track(Elements elements) {
+        caches(elements).tracked = true;
+    }
+
     public static boolean hasStaticMethod(TypeElement cls, TypeName takes, TypeName returns) {
         return getStaticMethod(cls, takes, returns) != null;
     }
 
     public static ExecutableElement getStaticMethod(TypeElement cls, TypeName takes,
             TypeName returns) {
-        for (Element element : cls.getEnclosedElements()) {
-            if (element.getKind() != ElementKind.METHOD) {
-                continue;
-            }
-            ExecutableElement method = (ExecutableElement) element;
-            if (methodMatches(method, Modifier.STATIC, takes, returns)) {
-                return method;
-            }
-        }
-        return null;
+        return getLocalMethodIndex(cls).get(Modifier.STATIC, takes, returns);
     }
 
     public static boolean hasAbstractMethod(Elements elementUtils, TypeElement cls, TypeName takes,
@@ -46,18 +147,233 @@ public final class ElementUtil {
 
     public static ExecutableElement getAbstractMethod(Elements elementUtils,
             TypeElement cls, TypeName takes, TypeName returns) {
-        for (ExecutableElement method : getLocalAndInheritedMethods(cls, elementUtils)) {
-            if (methodMatches(method, Modifier.ABSTRACT, takes, returns)) {
+        return getLocalAndInheritedMethodIndex(elementUtils, cls)
+                .get(Modifier.ABSTRACT, takes, returns);
+    }
+
+    /**
+     * Looks up all {@code signatures} on {@code cls} at once. Static signatures are matched
+     * against the methods declared in {@code cls}, all others against its local and inherited
+     * methods. Signatures without a matching method are missing from the returned map.
+     */
+    public static ImmutableMap<MethodSignature, ExecutableElement> getMethods(
+            Elements elementUtils, TypeElement cls, Iterable<MethodSignature> signatures) {
+        Map<MethodSignature, ExecutableElement> methods = new LinkedHashMap<>();
+        MethodIndex local = null;
+        MethodIndex inherited = null;
+        for (MethodSignature signature : signatures) {
+            MethodIndex index;
+            if (signature.modifier() == Modifier.STATIC) {
+                if (local == null) {
+                    local = getLocalMethodIndex(cls);
+                }
+                index = local;
+            } else {
+                if (inherited == null) {
+                    inherited = getLocalAndInheritedMethodIndex(elementUtils, cls);
+                }
+                index = inherited;
+            }
+            ExecutableElement method = index.get(signature);
+            if (method != null) {
+                methods.put(signature, method);
+            }
+        }
+        return ImmutableMap.copyOf(methods);
+    }
+
+    public static boolean hasStaticMethod(Types typeUtils, TypeElement cls, TypeMirror takes,
+            TypeMirror returns) {
+        return getStaticMethod(typeUtils, cls, takes, returns) != null;
+    }
+
+    /**
+     * Like {@link #getStaticMethod(TypeElement, TypeName, TypeName)} but compares the already
+     * resolved {@code takes} and {@code returns} mirrors directly instead of converting every
+     * candidate to a {@link TypeName}. A {@code null} {@code takes} matches methods without
+     * parameters.
+     */
+    public static ExecutableElement getStaticMethod(Types typeUtils, TypeElement cls,
+            TypeMirror takes, TypeMirror returns) {
+        return getStaticMethod(typeUtils, cls, takes, returns, TypeMatch.EXACT);
+    }
+
+    public static boolean hasStaticMethod(Types typeUtils, TypeElement cls, TypeMirror takes,
+            TypeMirror returns, TypeMatch match) {
+        return getStaticMethod(typeUtils, cls, takes, returns, match) != null;
+    }
+
+    /**
+     * Like {@link #getStaticMethod(Types, TypeElement, TypeMirror, TypeMirror)} but compares
+     * parameter and return types according to {@code match}.
+     */
+    public static ExecutableElement getStaticMethod(Types typeUtils, TypeElement cls,
+            TypeMirror takes, TypeMirror returns, TypeMatch match) {
+        return findMethod(typeUtils, getLocalMethods(cls), Modifier.STATIC, takes, returns, match);
+    }
+
+    public static boolean hasAbstractMethod(Elements elementUtils, Types typeUtils,
+            TypeElement cls, TypeMirror takes, TypeMirror returns) {
+        return getAbstractMethod(elementUtils, typeUtils, cls, takes, returns) != null;
+    }
+
+    /**
+     * Like {@link #getAbstractMethod(Elements, TypeElement, TypeName, TypeName)} but compares the
+     * already resolved {@code takes} and {@code returns} mirrors directly instead of converting
+     * every candidate to a {@link TypeName}. A {@code null} {@code takes} matches methods without
+     * parameters.
+     */
+    public static ExecutableElement getAbstractMethod(Elements elementUtils, Types typeUtils,
+            TypeElement cls, TypeMirror takes, TypeMirror returns) {
+        return getAbstractMethod(elementUtils, typeUtils, cls, takes, returns, TypeMatch.EXACT);
+    }
+
+    public static boolean hasAbstractMethod(Elements elementUtils, Types typeUtils,
+            TypeElement cls, TypeMirror takes, TypeMirror returns, TypeMatch match) {
+        return getAbstractMethod(elementUtils, typeUtils, cls, takes, returns, match) != null;
+    }
+
+    /**
+     * Like {@link #getAbstractMethod(Elements, Types, TypeElement, TypeMirror, TypeMirror)} but
+     * compares parameter and return types according to {@code match}.
+     */
+    public static ExecutableElement getAbstractMethod(Elements elementUtils, Types typeUtils,
+            TypeElement cls, TypeMirror takes, TypeMirror returns, TypeMatch match) {
+        ImmutableList<ExecutableElement> methods =
+                getLocalAndInheritedMethods(elementUtils, cls).asList();
+        return findMethod(typeUtils, methods, Modifier.ABSTRACT, takes, returns, match);
+    }
+
+    private static ExecutableElement findMethod(Types typeUtils,
+            ImmutableList<ExecutableElement> methods, Modifier modifier, TypeMirror takes,
+            TypeMirror returns, TypeMatch match) {
+        for (int i = 0, size = methods.size(); i < size; i++) {
+            ExecutableElement method = methods.get(i);
+            if (hasModifier(method, modifier) && methodTakes(typeUtils, method, takes, match)
+                    && methodReturns(typeUtils, method, returns, match)) {
                 return method;
             }
         }
         return null;
     }
 
-    private static boolean methodMatches(ExecutableElement method, Modifier modifier,
-            TypeName takes, TypeName returns) {
-        return hasModifier(method, modifier) && methodTakes(method, takes)
-                && methodReturns(method, returns);
+    /**
+     * Returns the methods declared in {@code cls}, computed on the first call for each type. They
+     * are cached for the compilation whose {@link Elements} this class was passed last.
+     */
+    public static ImmutableList<ExecutableElement> getLocalMethods(TypeElement cls) {
+        ElementCaches caches = currentCaches();
+        ImmutableList<ExecutableElement> methods =
+                caches != null ? caches.localMethods.getIfPresent(cls) : null;
+        if (methods == null) {
+            methods = ImmutableList.copyOf(ElementFilter.methodsIn(cls.getEnclosedElements()));
+            if (caches != null) {
+                methods = putIfAbsent(caches.localMethods, cls, methods);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Returns the result of {@link MoreElements#getLocalAndInheritedMethods} for {@code cls},
+     * resolving the hierarchy only on the first call for each type.
+     */
+    public static ImmutableSet<ExecutableElement> getLocalAndInheritedMethods(
+            Elements elementUtils, TypeElement cls) {
+        Cache<TypeElement, ImmutableSet<ExecutableElement>> cache =
+                caches(elementUtils).inheritedMethods;
+        ImmutableSet<ExecutableElement> methods = cache.getIfPresent(cls);
+        if (methods == null) {
+            methods = putIfAbsent(cache, cls,
+                    MoreElements.getLocalAndInheritedMethods(cls, elementUtils));
+        }
+        return methods;
+    }
+
+    public static CacheStats getLocalAndInheritedMethodsCacheStats(Elements elementUtils) {
+        return ELEMENT_CACHES.getUnchecked(elementUtils).inheritedMethods.stats();
+    }
+
+    public static CacheStats getLocalAndInheritedMethodsCacheStats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (ElementCaches caches : ELEMENT_CACHES.asMap().values()) {
+            stats = stats.plus(caches.inheritedMethods.stats());
+        }
+        return stats;
+    }
+
+    public static CacheStats getMethodIndexCacheStats(Elements elementUtils) {
+        ElementCaches caches = ELEMENT_CACHES.getUnchecked(elementUtils);
+        return caches.localMethodIndex.stats().plus(caches.inheritedMethodIndex.stats());
+    }
+
+    public static CacheStats getMethodIndexCacheStats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (ElementCaches caches : ELEMENT_CACHES.asMap().values()) {
+            stats = stats.plus(caches.localMethodIndex.stats())
+                    .plus(caches.inheritedMethodIndex.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Returns a {@link MethodIndex} of the methods declared in {@code cls}. The index is built on
+     * the first call for each type and shared afterwards, like
+     * {@link #getLocalMethods(TypeElement)}.
+     */
+    public static MethodIndex getLocalMethodIndex(TypeElement cls) {
+        ElementCaches caches = currentCaches();
+        MethodIndex index = caches != null ? caches.localMethodIndex.getIfPresent(cls) : null;
+        if (index == null) {
+            index = MethodIndex.forLocalMethods(cls);
+            if (caches != null) {
+                index = putIfAbsent(caches.localMethodIndex, cls, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns a {@link MethodIndex} of the local and inherited methods of {@code cls}. The index
+     * is built on the first call for each type and shared afterwards.
+     */
+    public static MethodIndex getLocalAndInheritedMethodIndex(Elements elementUtils,
+            TypeElement cls) {
+        Cache<TypeElement, MethodIndex> cache = caches(elementUtils).inheritedMethodIndex;
+        MethodIndex index = cache.getIfPresent(cls);
+        if (index == null) {
+            index = putIfAbsent(cache, cls,
+                    MethodIndex.forLocalAndInheritedMethods(elementUtils, cls));
+        }
+        return index;
+    }
+
+    static void invalidateElementCaches(Elements elements) {
+        ElementCaches caches = ELEMENT_CACHES.getIfPresent(elements);
+        if (caches != null) {
+            caches.invalidateAll();
+        }
+    }
+
+    // Cache.get(key, loader) wraps the loader on every call, so hits are looked up with
+    // getIfPresent and loaded values stored with putIfAbsent, which doesn't count another miss
+
+    static <K, V> V getCached(Cache<K, V> cache, K key, Callable<? extends V> loader) {
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        try {
+            value = loader.call();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+        return putIfAbsent(cache, key, value);
+    }
+
+    private static <K, V> V putIfAbsent(Cache<K, V> cache, K key, V value) {
+        V existing = cache.asMap().putIfAbsent(key, value);
+        return existing != null ? existing : value;
     }
 
     static boolean hasModifier(ExecutableElement method, Modifier modifier) {
@@ -70,7 +386,7 @@ public final class ElementUtil {
             if (parameters.size() != 1) {
                 return false;
             }
-            if (!takes.equals(ClassName.get(parameters.get(0).asType()))) {
+            if (!MethodSignature.equal(takes, TypeName.get(parameters.get(0).asType()))) {
                 return false;
             }
         } else {
@@ -82,12 +398,209 @@ public final class ElementUtil {
     }
 
     static boolean methodReturns(ExecutableElement method, TypeName returns) {
-        return returns.equals(ClassName.get(method.getReturnType()));
+        return MethodSignature.equal(returns, TypeName.get(method.getReturnType()));
+    }
+
+    static boolean methodTakes(Types typeUtils, ExecutableElement method, TypeMirror takes,
+            TypeMatch match) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        if (takes == null) {
+            return parameters.isEmpty();
+        }
+        return parameters.size() == 1
+                && matches(typeUtils, parameters.get(0).asType(), takes, match);
+    }
+
+    static boolean methodReturns(Types typeUtils, ExecutableElement method, TypeMirror returns,
+            TypeMatch match) {
+        return matches(typeUtils, method.getReturnType(), returns, match);
+    }
+
+    /**
+     * Returns whether {@code type} matches {@code expected} according to {@code match}. Erasure
+     * and assignability results are cached for the current round, unless one of the types is
+     * missing and could still be generated.
+     */
+    public static boolean matches(final Types typeUtils, final TypeMirror type,
+            final TypeMirror expected, final TypeMatch match) {
+        if (match == TypeMatch.EXACT || type == expected) {
+            return isSameType(typeUtils, expected, type);
+        }
+        TypeKind kind = type.getKind();
+        if (kind == TypeKind.VOID || expected.getKind() == TypeKind.VOID) {
+            return kind == expected.getKind();
+        }
+        if (kind.isPrimitive() && match == TypeMatch.ERASURE) {
+            return kind == expected.getKind();
+        }
+        if (kind == TypeKind.ERROR || expected.getKind() == TypeKind.ERROR) {
+            return relate(typeUtils, type, expected, match);
+        }
+        return getCached(TYPE_RELATIONS.getUnchecked(typeUtils),
+                new TypeRelation(type, expected, match), new Callable<Boolean>() {
+                    @Override public Boolean call() {
+                        return relate(typeUtils, type, expected, match);
+                    }
+                });
+    }
+
+    private static boolean relate(Types typeUtils, TypeMirror type, TypeMirror expected,
+            TypeMatch match) {
+        if (match == TypeMatch.ERASURE) {
+            return typeUtils.isSameType(typeUtils.erasure(type), typeUtils.erasure(expected));
+        }
+        return typeUtils.isAssignable(type, expected);
+    }
+
+    public static CacheStats getTypeRelationCacheStats(Types typeUtils) {
+        return TYPE_RELATIONS.getUnchecked(typeUtils).stats();
+    }
+
+    public static CacheStats getTypeRelationCacheStats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (Cache<TypeRelation, Boolean> relations : TYPE_RELATIONS.asMap().values()) {
+            stats = stats.plus(relations.stats());
+        }
+        return stats;
+    }
+
+    static void invalidateTypeRelations() {
+        for (Cache<TypeRelation, Boolean> relations : TYPE_RELATIONS.asMap().values()) {
+            relations.invalidateAll();
+        }
+    }
+
+    /** Compares mirrors by identity, javac doesn't implement equals for them. */
+    private static final class TypeRelation {
+        final TypeMirror type;
+        final TypeMirror expected;
+        final TypeMatch match;
+
+        TypeRelation(TypeMirror type, TypeMirror expected, TypeMatch match) {
+            this.type = type;
+            this.expected = expected;
+            this.match = match;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof TypeRelation)) {
+                return false;
+            }
+            TypeRelation other = (TypeRelation) o;
+            return type == other.type && expected == other.expected && match == other.match;
+        }
+
+        @Override public int hashCode() {
+            return 31 * (31 * System.identityHashCode(type) + System.identityHashCode(expected))
+                    + match.hashCode();
+        }
+    }
+
+    static boolean isSameType(Types typeUtils, TypeMirror a, TypeMirror b) {
+        if (a == b) {
+            return true;
+        }
+        TypeKind kind = a.getKind();
+        if (kind != b.getKind()) {
+            return false;
+        }
+        if (kind.isPrimitive() || kind == TypeKind.VOID) {
+            return true;
+        }
+        return typeUtils.isSameType(a, b);
     }
 
+    /**
+     * Resolves {@code typeName} to a {@link TypeMirror} that can be passed to the
+     * {@link TypeMirror} based lookups. Resolve each type once and keep the mirror around, the
+     * lookups themselves don't allocate.
+     *
+     * @throws IllegalArgumentException if the type can't be found or is a type variable.
+     */
+    public static TypeMirror getTypeMirror(Elements elementUtils, Types typeUtils,
+            TypeName typeName) {
+        if (typeName.equals(TypeName.VOID)) {
+            return typeUtils.getNoType(TypeKind.VOID);
+        }
+        if (typeName.isPrimitive()) {
+            return typeUtils.getPrimitiveType(getPrimitiveKind(typeName));
+        }
+        if (typeName instanceof ClassName) {
+            return typeUtils.getDeclaredType(getTypeElement(elementUtils, (ClassName) typeName));
+        }
+        if (typeName instanceof ParameterizedTypeName) {
+            ParameterizedTypeName parameterized = (ParameterizedTypeName) typeName;
+            List<TypeName> arguments = parameterized.typeArguments;
+            TypeMirror[] mirrors = new TypeMirror[arguments.size()];
+            for (int i = 0; i < mirrors.length; i++) {
+                mirrors[i] = getTypeMirror(elementUtils, typeUtils, arguments.get(i));
+            }
+            TypeElement rawType = getTypeElement(elementUtils, parameterized.rawType);
+            return typeUtils.getDeclaredType(rawType, mirrors);
+        }
+        if (typeName instanceof ArrayTypeName) {
+            TypeName componentType = ((ArrayTypeName) typeName).componentType;
+            return typeUtils.getArrayType(getTypeMirror(elementUtils, typeUtils, componentType));
+        }
+        if (typeName instanceof WildcardTypeName) {
+            WildcardTypeName wildcard = (WildcardTypeName) typeName;
+            if (!wildcard.lowerBounds.isEmpty()) {
+                TypeMirror lowerBound =
+                        getTypeMirror(elementUtils, typeUtils, wildcard.lowerBounds.get(0));
+                return typeUtils.getWildcardType(null, lowerBound);
+            }
+            TypeName upperBound = wildcard.upperBounds.get(0);
+            if (upperBound.equals(ClassName.OBJECT)) {
+                return typeUtils.getWildcardType(null, null);
+            }
+            return typeUtils.getWildcardType(
+                    getTypeMirror(elementUtils, typeUtils, upperBound), null);
+        }
+        throw new IllegalArgumentException("Can't resolve " + typeName + " to a TypeMirror");
+    }
+
+    private static TypeElement getTypeElement(Elements elementUtils, ClassName className) {
+        TypeElement element = elementUtils.getTypeElement(className.toString());
+        if (element == null) {
+            throw new IllegalArgumentException("Type " + className + " not found");
+        }
+        return element;
+    }
+
+    private static TypeKind getPrimitiveKind(TypeName typeName) {
+        if (typeName.equals(TypeName.BOOLEAN)) return TypeKind.BOOLEAN;
+        if (typeName.equals(TypeName.BYTE)) return TypeKind.BYTE;
+        if (typeName.equals(TypeName.SHORT)) return TypeKind.SHORT;
+        if (typeName.equals(TypeName.INT)) return TypeKind.INT;
+        if (typeName.equals(TypeName.LONG)) return TypeKind.LONG;
+        if (typeName.equals(TypeName.CHAR)) return TypeKind.CHAR;
+        if (typeName.equals(TypeName.FLOAT)) return TypeKind.FLOAT;
+        if (typeName.equals(TypeName.DOUBLE)) return TypeKind.DOUBLE;
+        throw new IllegalArgumentException("Not a primitive type: " + typeName);
+    }
+
+    /**
+     * Returns true if a type named {@code className} can be found. Found types are cached per
+     * {@link Elements} instance. Missing ones could be generated in a later round, they are only
+     * cached until the end of the round if RoundTracker runs in the compilation and looked up
+     * again on every call otherwise.
+     */
     public static boolean typeExists(Elements elements, ClassName className) {
-        String name = className.toString();
-        return elements.getTypeElement(name) != null;
+        ElementCaches caches = caches(elements);
+        if (caches.existingTypes.contains(className)) {
+            return true;
+        }
+        boolean tracked = caches.tracked;
+        if (tracked && caches.missingTypes.contains(className)) {
+            return false;
+        }
+        boolean exists = elements.getTypeElement(className.toString()) != null;
+        if (exists) {
+            caches.existingTypes.add(className);
+        } else if (tracked) {
+            caches.missingTypes.add(className);
+        }
+        return exists;
     }
 
     public static boolean hasAnnotationWithName(Element element, String simpleName) {
@@ -117,6 +630,37 @@ public final class ElementUtil {
         return null;
     }
 
+    /**
+     * Returns all element values of the {@code clazz} annotation on {@code element}, or
+     * {@code null} if it isn't present. The values are extracted in a single pass and cached per
+     * element and annotation type, like {@link #getLocalMethods(TypeElement)}.
+     */
+    public static AnnotationValues getAnnotationValues(Element element,
+            Class<? extends Annotation> clazz) {
+        ElementCaches caches = currentCaches();
+        ConcurrentMap<Class<?>, Optional<AnnotationValues>> values =
+                caches != null ? caches.annotationValues.getIfPresent(element) : null;
+        if (values == null) {
+            values = new ConcurrentHashMap<>();
+            if (caches != null) {
+                values = putIfAbsent(caches.annotationValues, element, values);
+            }
+        }
+        Optional<AnnotationValues> result = values.get(clazz);
+        if (result == null) {
+            Optional<AnnotationMirror> annotation =
+                    MoreElements.getAnnotationMirror(element, clazz);
+            result = annotation.isPresent()
+                    ? Optional.of(AnnotationValues.of(annotation.get()))
+                    : Optional.<AnnotationValues>absent();
+            Optional<AnnotationValues> existing = values.putIfAbsent(clazz, result);
+            if (existing != null) {
+                result = existing;
+            }
+        }
+        return result.orNull();
+    }
+
     private ElementUtil() {
         throw new AssertionError("No instances.");
     }
@@ -0,0 +1,327 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.value.extension.AutoValueExtension.Context;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Collects the time and memory that {@link InstrumentedExtension}s spend per value class and
+ * writes them to the file given by the {@value #OPTION_REPORT} processor option once processing
+ * is over. Each compilation has its own profile. Without the option nothing is recorded.
+ */
+public final class ExtensionProfiler {
+
+    public static final String OPTION_REPORT = "autovalueutil.profile.report";
+    public static final String OPTION_TOP = "autovalueutil.profile.top";
+
+    static final Set<String> OPTIONS = ImmutableSet.of(OPTION_REPORT, OPTION_TOP);
+
+    private static final int DEFAULT_TOP = 20;
+
+    enum Phase {
+        APPLICABLE("applicable"),
+        MUST_BE_FINAL("mustBeFinal"),
+        GENERATE_CLASS("generateClass");
+
+        final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    // Keyed by the Elements instance of each compilation like ValueClassRegistry's state, so
+    // measurements don't depend on whether RoundTracker or AutoValue is initialized first.
+    // Absent for compilations without the report option.
+    private static final Cache<Elements, Optional<Profile>> PROFILES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private static Profile profile(ProcessingEnvironment processingEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        Optional<Profile> profile = PROFILES.getIfPresent(elements);
+        if (profile == null) {
+            Optional<Profile> created = Optional.fromNullable(newProfile(processingEnv));
+            profile = PROFILES.asMap().putIfAbsent(elements, created);
+            if (profile == null) {
+                profile = created;
+            }
+        }
+        return profile.orNull();
+    }
+
+    private static Profile newProfile(ProcessingEnvironment processingEnv) {
+        String report = processingEnv.getOptions().get(OPTION_REPORT);
+        if (report == null) {
+            return null;
+        }
+        String top = processingEnv.getOptions().get(OPTION_TOP);
+        return new Profile(new File(report), top != null ? Integer.parseInt(top) : DEFAULT_TOP);
+    }
+
+    static void writeReport(ProcessingEnvironment processingEnv) {
+        Profile profile = profile(processingEnv);
+        if (profile == null) {
+            return;
+        }
+        try {
+            profile.write();
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write extension profile to " + profile.report + ": " + e);
+        }
+    }
+
+    /** Returns whether {@code processingEnv}'s compilation records a profile. */
+    public static boolean isEnabled(ProcessingEnvironment processingEnv) {
+        return profile(processingEnv) != null;
+    }
+
+    static Scope enter(String extension, Context context, Phase phase) {
+        Profile profile = profile(context.processingEnvironment());
+        if (profile == null) {
+            return null;
+        }
+        String cls = context.autoValueClass().getQualifiedName().toString();
+        Scope scope = new Scope(profile.stats(extension, cls), phase);
+        scope.startBytes = allocatedBytes();
+        scope.startNanos = System.nanoTime();
+        return scope;
+    }
+
+    static void exit(Scope scope) {
+        if (scope == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - scope.startNanos;
+        long bytes = allocatedBytes() - scope.startBytes;
+        Measurement measurement = scope.stats.phases.get(scope.phase);
+        measurement.calls++;
+        measurement.nanos += nanos;
+        measurement.bytes += bytes;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or {@code 0} if the JVM
+     * doesn't track that.
+     */
+    static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = allocationCounter();
+        return bean != null ? bean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    static boolean isAllocationCountingSupported() {
+        return allocationCounter() != null;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()
+                    && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    static final class Scope {
+        final Stats stats;
+        final Phase phase;
+        long startNanos;
+        long startBytes;
+
+        Scope(Stats stats, Phase phase) {
+            this.stats = stats;
+            this.phase = phase;
+        }
+    }
+
+    private static final class Measurement {
+        long calls;
+        long nanos;
+        long bytes;
+
+        void add(Measurement other) {
+            calls += other.calls;
+            nanos += other.nanos;
+            bytes += other.bytes;
+        }
+    }
+
+    private static final class Stats {
+        final Map<Phase, Measurement> phases = new LinkedHashMap<>();
+
+        Stats() {
+            for (Phase phase : Phase.values()) {
+                phases.put(phase, new Measurement());
+            }
+        }
+
+        void add(Stats other) {
+            for (Phase phase : Phase.values()) {
+                phases.get(phase).add(other.phases.get(phase));
+            }
+        }
+
+        long nanos() {
+            long nanos = 0;
+            for (Measurement measurement : phases.values()) {
+                nanos += measurement.nanos;
+            }
+            return nanos;
+        }
+
+        long bytes() {
+            long bytes = 0;
+            for (Measurement measurement : phases.values()) {
+                bytes += measurement.bytes;
+            }
+            return bytes;
+        }
+    }
+
+    private static final class Profile {
+        final File report;
+        final int top;
+        // extension -> value class -> stats
+        final Map<String, Map<String, Stats>> stats = new LinkedHashMap<>();
+
+        Profile(File report, int top) {
+            this.report = report;
+            this.top = top;
+        }
+
+        synchronized Stats stats(String extension, String cls) {
+            Map<String, Stats> classes = stats.get(extension);
+            if (classes == null) {
+                classes = new LinkedHashMap<>();
+                stats.put(extension, classes);
+            }
+            Stats result = classes.get(cls);
+            if (result == null) {
+                result = new Stats();
+                classes.put(cls, result);
+            }
+            return result;
+        }
+
+        synchronized void write() throws IOException {
+            File parent = report.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Could not create " + parent);
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(report), UTF_8)) {
+                writer.write(toJson());
+            }
+        }
+
+        String toJson() {
+            final Map<String, Map<String, Stats>> byClass = new LinkedHashMap<>();
+            final Map<String, Stats> classTotals = new LinkedHashMap<>();
+            StringBuilder json = new StringBuilder("{\n  \"extensions\": [");
+            boolean first = true;
+            for (Map.Entry<String, Map<String, Stats>> extension : stats.entrySet()) {
+                Stats total = new Stats();
+                for (Map.Entry<String, Stats> cls : extension.getValue().entrySet()) {
+                    total.add(cls.getValue());
+                    Map<String, Stats> extensions = byClass.get(cls.getKey());
+                    if (extensions == null) {
+                        extensions = new LinkedHashMap<>();
+                        byClass.put(cls.getKey(), extensions);
+                        classTotals.put(cls.getKey(), new Stats());
+                    }
+                    extensions.put(extension.getKey(), cls.getValue());
+                    classTotals.get(cls.getKey()).add(cls.getValue());
+                }
+                json.append(first ? "\n" : ",\n").append("    {\"name\": ");
+                appendString(json, extension.getKey());
+                json.append(", \"classes\": ").append(extension.getValue().size());
+                appendStats(json, total);
+                json.append('}');
+                first = false;
+            }
+            json.append("\n  ],\n  \"slowestClasses\": [");
+
+            List<String> classes = new ArrayList<>(classTotals.keySet());
+            Collections.sort(classes, new Comparator<String>() {
+                @Override public int compare(String a, String b) {
+                    long nanosA = classTotals.get(a).nanos();
+                    long nanosB = classTotals.get(b).nanos();
+                    return nanosA < nanosB ? 1 : nanosA > nanosB ? -1 : 0;
+                }
+            });
+            first = true;
+            for (String cls : classes.subList(0, Math.min(top, classes.size()))) {
+                json.append(first ? "\n" : ",\n").append("    {\"class\": ");
+                appendString(json, cls);
+                appendStats(json, classTotals.get(cls));
+                json.append(", \"extensions\": {");
+                boolean firstExtension = true;
+                for (Map.Entry<String, Stats> extension : byClass.get(cls).entrySet()) {
+                    if (!firstExtension) json.append(", ");
+                    appendString(json, extension.getKey());
+                    json.append(": ").append(extension.getValue().nanos());
+                    firstExtension = false;
+                }
+                json.append("}}");
+                first = false;
+            }
+            return json.append("\n  ]\n}\n").toString();
+        }
+
+        private static void appendStats(StringBuilder json, Stats stats) {
+            json.append(", \"nanos\": ").append(stats.nanos())
+                    .append(", \"bytes\": ").append(stats.bytes());
+            for (Map.Entry<Phase, Measurement> phase : stats.phases.entrySet()) {
+                Measurement measurement = phase.getValue();
+                json.append(", \"").append(phase.getKey().key).append("\": {")
+                        .append("\"calls\": ").append(measurement.calls)
+                        .append(", \"nanos\": ").append(measurement.nanos)
+                        .append(", \"bytes\": ").append(measurement.bytes)
+                        .append('}');
+            }
+        }
+
+        private static void appendString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0, length = value.length(); i < length; i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+    }
+
+    private ExtensionProfiler() {
+        throw new AssertionError("No instances.");
+    }
+}
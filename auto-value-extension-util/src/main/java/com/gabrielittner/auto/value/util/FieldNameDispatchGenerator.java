@@ -0,0 +1,180 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.value.extension.AutoValueExtension.Context;
+import com.google.common.collect.ImmutableList;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.lang.model.element.ExecutableElement;
+
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Generates a method that maps a field name, like a JSON key, to the index of the property it
+ * belongs to without hashing or allocating:
+ * <pre>{@code
+ * static int fieldIndex(CharSequence key) {
+ *   switch (key.length()) {
+ *     case 2:
+ *       switch (key.charAt(0)) {
+ *         case 'i':
+ *           return "id".contentEquals(key) ? 0 : -1;
+ *         case 't':
+ *           return "to".contentEquals(key) ? 2 : -1;
+ *       }
+ *       break;
+ *     case 4:
+ *       return "name".contentEquals(key) ? 1 : -1;
+ *   }
+ *   return -1;
+ * }
+ * }</pre>
+ * Names are grouped by length and then split on the character position that tells the most of
+ * them apart, until one candidate is left, which is compared in full.
+ */
+public final class FieldNameDispatchGenerator {
+
+    /**
+     * Returns the field name of every property of {@code context} in order, which is the
+     * {@code member} of a {@code rename} annotation on the accessor or the property name.
+     */
+    public static ImmutableList<String> fieldNames(Context context,
+            Class<? extends Annotation> rename, String member) {
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (Map.Entry<String, ExecutableElement> entry : context.properties().entrySet()) {
+            Object value = ElementUtil.getAnnotationValue(entry.getValue(), rename, member);
+            names.add(value != null ? value.toString() : entry.getKey());
+        }
+        return names.build();
+    }
+
+    /**
+     * Generates {@code static int methodName(CharSequence key)} returning the index of
+     * {@code key} in {@code names}, or {@code -1} if it's none of them.
+     *
+     * @throws IllegalArgumentException if {@code names} contains duplicates.
+     */
+    public static MethodSpec generate(String methodName, List<String> names) {
+        if (new HashSet<>(names).size() != names.size()) {
+            throw new IllegalArgumentException("Duplicate field names in " + names);
+        }
+        SortedMap<Integer, List<Integer>> byLength = new TreeMap<>();
+        for (int i = 0, size = names.size(); i < size; i++) {
+            int length = names.get(i).length();
+            List<Integer> group = byLength.get(length);
+            if (group == null) {
+                group = new ArrayList<>();
+                byLength.put(length, group);
+            }
+            group.add(i);
+        }
+
+        CodeBlock.Builder code = CodeBlock.builder();
+        if (!byLength.isEmpty()) {
+            code.beginControlFlow("switch (key.length())");
+            for (Map.Entry<Integer, List<Integer>> group : byLength.entrySet()) {
+                code.add("case $L:\n$>", group.getKey());
+                dispatch(code, names, group.getValue(), new HashSet<Integer>());
+                code.add("$<");
+            }
+            code.endControlFlow();
+        }
+        code.addStatement("return -1");
+
+        return MethodSpec.methodBuilder(methodName)
+                .addModifiers(STATIC)
+                .returns(TypeName.INT)
+                .addParameter(CharSequence.class, "key")
+                .addCode(code.build())
+                .build();
+    }
+
+    /**
+     * Adds statements that return the index of the name in {@code candidates} matching
+     * {@code key}, or break out of the enclosing switch. All candidates have the same length and
+     * the same characters at {@code checked}.
+     */
+    private static void dispatch(CodeBlock.Builder code, List<String> names,
+            List<Integer> candidates, Set<Integer> checked) {
+        if (candidates.size() == 1) {
+            int index = candidates.get(0);
+            code.addStatement("return $L.contentEquals(key) ? $L : -1",
+                    stringLiteral(names.get(index)), index);
+            return;
+        }
+        int length = names.get(candidates.get(0)).length();
+        int position = -1;
+        SortedMap<Character, List<Integer>> split = null;
+        for (int p = 0; p < length; p++) {
+            if (checked.contains(p)) {
+                continue;
+            }
+            SortedMap<Character, List<Integer>> bySign = new TreeMap<>();
+            for (int index : candidates) {
+                char c = names.get(index).charAt(p);
+                List<Integer> group = bySign.get(c);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    bySign.put(c, group);
+                }
+                group.add(index);
+            }
+            if (split == null || bySign.size() > split.size()) {
+                position = p;
+                split = bySign;
+            }
+        }
+        Set<Integer> nowChecked = new HashSet<>(checked);
+        nowChecked.add(position);
+        code.beginControlFlow("switch (key.charAt($L))", position);
+        for (Map.Entry<Character, List<Integer>> group : split.entrySet()) {
+            code.add("case $L:\n$>", charLiteral(group.getKey()));
+            dispatch(code, names, group.getValue(), nowChecked);
+            code.add("$<");
+        }
+        code.endControlFlow();
+        code.addStatement("break");
+    }
+
+    private static String charLiteral(char c) {
+        return "'" + escape(c, '\'') + "'";
+    }
+
+    // JavaPoet's $S doesn't escape backslashes and quotes
+    static String stringLiteral(String s) {
+        StringBuilder literal = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0, length = s.length(); i < length; i++) {
+            literal.append(escape(s.charAt(i), '"'));
+        }
+        return literal.append('"').toString();
+    }
+
+    private static String escape(char c, char quote) {
+        if (c == quote || c == '\\') {
+            return "\\" + c;
+        }
+        if (c >= 0x20 && c < 0x7f) {
+            return String.valueOf(c);
+        }
+        // unicode escapes are translated before parsing, line breaks would end the literal
+        if (c == '\n') {
+            return "\\n";
+        }
+        if (c == '\r') {
+            return "\\r";
+        }
+        return String.format("\\u%04x", (int) c);
+    }
+
+    private FieldNameDispatchGenerator() {
+        throw new AssertionError("No instances.");
+    }
+}
@@ -0,0 +1,118 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.value.extension.AutoValueExtension;
+import com.google.auto.value.extension.AutoValueExtension.Context;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeVariableName;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Caches the source returned by {@link AutoValueExtension#generateClass} across compilations
+ * that run in the same long-lived JVM, like the Gradle daemon. Entries are keyed by
+ * {@link #fingerprint}, which covers everything AutoValue tells an extension about the class:
+ * <pre>{@code
+ * @Override public String generateClass(final Context context, final String className,
+ *         final String classToExtend, final boolean isFinal) {
+ *     return GeneratedSourceCache.get(this, context, className, classToExtend, isFinal,
+ *             new Callable<String>() {
+ *                 @Override public String call() {
+ *                     return generate(context, className, classToExtend, isFinal);
+ *                 }
+ *             });
+ * }
+ * }</pre>
+ * Only use it for extensions whose output depends on nothing but the fingerprinted data. It
+ * doesn't cover other members of the class, like non-abstract methods, or types referenced by
+ * the properties.
+ */
+public final class GeneratedSourceCache {
+
+    private static final int CACHE_SIZE = 2048;
+
+    private static final Cache<HashCode, String> SOURCES = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .recordStats()
+            .build();
+
+    /**
+     * Returns the cached source for {@code extension} and the fingerprinted arguments, or calls
+     * {@code generator} and caches its result.
+     */
+    public static String get(AutoValueExtension extension, Context context, String className,
+            String classToExtend, boolean isFinal, Callable<String> generator) {
+        HashCode key = fingerprint(extension, context, className, classToExtend, isFinal);
+        return ElementUtil.getCached(SOURCES, key, generator);
+    }
+
+    /**
+     * Returns a SHA-256 hash of the extension's class, the {@code @AutoValue} class' package,
+     * name, annotations and type variables, each property's name, accessor, {@link TypeName} and
+     * annotations and the remaining {@code generateClass} arguments.
+     */
+    public static HashCode fingerprint(AutoValueExtension extension, Context context,
+            String className, String classToExtend, boolean isFinal) {
+        PropertyModel model = PropertyModel.get(context);
+        Hasher hasher = Hashing.sha256().newHasher();
+        putString(hasher, extension.getClass().getName());
+        putString(hasher, model.packageName());
+        putString(hasher, model.autoValueClass().toString());
+        putAnnotations(hasher, context.autoValueClass());
+        List<TypeVariableName> typeVariables = model.typeVariables();
+        hasher.putInt(typeVariables.size());
+        for (int i = 0, size = typeVariables.size(); i < size; i++) {
+            TypeVariableName typeVariable = typeVariables.get(i);
+            putString(hasher, typeVariable.name);
+            putString(hasher, typeVariable.bounds.toString());
+        }
+        Map<String, ExecutableElement> methods = context.properties();
+        hasher.putInt(model.properties().size());
+        for (PropertyModel.Property property : model.properties().values()) {
+            putString(hasher, property.name());
+            putString(hasher, property.methodName());
+            putString(hasher, property.type().toString());
+            putAnnotations(hasher, methods.get(property.name()));
+        }
+        putString(hasher, className);
+        putString(hasher, classToExtend);
+        return hasher.putBoolean(isFinal).hash();
+    }
+
+    public static CacheStats stats() {
+        return SOURCES.stats();
+    }
+
+    public static long size() {
+        return SOURCES.size();
+    }
+
+    // annotation values are part of the mirror's string form
+    private static void putAnnotations(Hasher hasher, Element element) {
+        List<? extends AnnotationMirror> annotations = element.getAnnotationMirrors();
+        hasher.putInt(annotations.size());
+        for (int i = 0, size = annotations.size(); i < size; i++) {
+            putString(hasher, annotations.get(i).toString());
+        }
+    }
+
+    // length prefixed, so that adjacent strings can't run into each other
+    private static void putString(Hasher hasher, String value) {
+        hasher.putInt(value.length()).putString(value, UTF_8);
+    }
+
+    private GeneratedSourceCache() {
+        throw new AssertionError("No instances.");
+    }
+}
@@ -0,0 +1,54 @@
+package com.gabrielittner.auto.value.util;
+
+import com.gabrielittner.auto.value.util.ExtensionProfiler.Phase;
+import com.gabrielittner.auto.value.util.ExtensionProfiler.Scope;
+import com.google.auto.value.extension.AutoValueExtension;
+import java.util.Set;
+
+/**
+ * Wraps an {@link AutoValueExtension} and records how long its calls take with
+ * {@link ExtensionProfiler}. Register a subclass that passes the real extension to the
+ * constructor in place of the extension itself.
+ */
+public class InstrumentedExtension extends AutoValueExtension {
+
+    private final AutoValueExtension delegate;
+    private final String name;
+
+    public InstrumentedExtension(AutoValueExtension delegate) {
+        this.delegate = delegate;
+        this.name = delegate.getClass().getName();
+    }
+
+    @Override public boolean applicable(Context context) {
+        Scope scope = ExtensionProfiler.enter(name, context, Phase.APPLICABLE);
+        try {
+            return delegate.applicable(context);
+        } finally {
+            ExtensionProfiler.exit(scope);
+        }
+    }
+
+    @Override public boolean mustBeFinal(Context context) {
+        Scope scope = ExtensionProfiler.enter(name, context, Phase.MUST_BE_FINAL);
+        try {
+            return delegate.mustBeFinal(context);
+        } finally {
+            ExtensionProfiler.exit(scope);
+        }
+    }
+
+    @Override public Set<String> consumeProperties(Context context) {
+        return delegate.consumeProperties(context);
+    }
+
+    @Override public String generateClass(Context context, String className,
+            String classToExtend, boolean isFinal) {
+        Scope scope = ExtensionProfiler.enter(name, context, Phase.GENERATE_CLASS);
+        try {
+            return delegate.generateClass(context, className, classToExtend, isFinal);
+        } finally {
+            ExtensionProfiler.exit(scope);
+        }
+    }
+}
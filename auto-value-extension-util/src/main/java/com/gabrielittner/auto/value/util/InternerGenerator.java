@@ -0,0 +1,196 @@
+package com.gabrielittner.auto.value.util;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PROTECTED;
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Generates static interners for AutoValue classes, so equal values can share one canonical
+ * instance.
+ */
+public final class InternerGenerator {
+
+    /**
+     * Adds a static {@code intern(value)} method that returns a canonical instance equal to
+     * {@code value}, compared with the generated {@code equals} and {@code hashCode}. Canonical
+     * instances are only weakly referenced and are collected once nothing else uses them.
+     * Also adds {@code internedCount()} and {@code internHitRate()} to measure the interner, the
+     * hit rate is {@code 0} before the first call.
+     */
+    public static TypeSpec.Builder addWeakInterner(PropertyModel model,
+            TypeSpec.Builder builder) {
+        TypeName elementType = internedElementType(model);
+        TypeName referenceType = ParameterizedTypeName.get(ClassName.get(WeakReference.class),
+                elementType);
+        FieldSpec interned = FieldSpec.builder(ParameterizedTypeName.get(
+                ClassName.get(Map.class), elementType, referenceType), "INTERNED",
+                PRIVATE, STATIC, FINAL)
+                .initializer("new $T<$T, $T>()", WeakHashMap.class, elementType, referenceType)
+                .build();
+        // WeakHashMap isn't thread safe, all access is synchronized on the map itself
+        CodeBlock intern = CodeBlock.builder()
+                .beginControlFlow("synchronized ($N)", interned)
+                .addStatement("$T reference = $N.get(value)", referenceType, interned)
+                .addStatement("$T interned = reference != null ? reference.get() : null",
+                        elementType)
+                .beginControlFlow("if (interned != null)")
+                .addStatement("INTERN_HITS.incrementAndGet()")
+                .addStatement("return $L", internedCast(model, "interned"))
+                .endControlFlow()
+                .addStatement("INTERN_MISSES.incrementAndGet()")
+                .addStatement("$N.put(value, new $T(value))", interned, referenceType)
+                .addStatement("return value")
+                .endControlFlow()
+                .build();
+        CodeBlock count = CodeBlock.builder()
+                .beginControlFlow("synchronized ($N)", interned)
+                .addStatement("return $N.size()", interned)
+                .endControlFlow()
+                .build();
+        return addInterner(model, builder, interned, intern, count);
+    }
+
+    /**
+     * Like {@link #addWeakInterner(PropertyModel, TypeSpec.Builder)}, but canonical instances are
+     * strongly referenced. Once {@code maximumSize} instances are interned the least recently used
+     * one is evicted, so values that are currently in use stay canonical.
+     */
+    public static TypeSpec.Builder addBoundedInterner(PropertyModel model,
+            TypeSpec.Builder builder, int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        TypeName elementType = internedElementType(model);
+        TypeName mapType = ParameterizedTypeName.get(ClassName.get(Map.class), elementType,
+                elementType);
+        TypeName entryType = ParameterizedTypeName.get(ClassName.get(Map.Entry.class), elementType,
+                elementType);
+        // access ordered, so the eldest entry is the least recently used one
+        TypeSpec lruMap = TypeSpec.anonymousClassBuilder("16, 0.75f, true")
+                .superclass(ParameterizedTypeName.get(ClassName.get(LinkedHashMap.class),
+                        elementType, elementType))
+                .addMethod(MethodSpec.methodBuilder("removeEldestEntry")
+                        .addAnnotation(Override.class)
+                        .addModifiers(PROTECTED)
+                        .returns(TypeName.BOOLEAN)
+                        .addParameter(entryType, "eldest")
+                        .addStatement("return size() > $L", maximumSize)
+                        .build())
+                .build();
+        FieldSpec interned = FieldSpec.builder(mapType, "INTERNED", PRIVATE, STATIC, FINAL)
+                .initializer("$L", lruMap)
+                .build();
+        // LinkedHashMap isn't thread safe and get reorders it, all access is synchronized
+        CodeBlock intern = CodeBlock.builder()
+                .beginControlFlow("synchronized ($N)", interned)
+                .addStatement("$T interned = $N.get(value)", elementType, interned)
+                .beginControlFlow("if (interned != null)")
+                .addStatement("INTERN_HITS.incrementAndGet()")
+                .addStatement("return $L", internedCast(model, "interned"))
+                .endControlFlow()
+                .addStatement("INTERN_MISSES.incrementAndGet()")
+                .addStatement("$N.put(value, value)", interned)
+                .addStatement("return value")
+                .endControlFlow()
+                .build();
+        CodeBlock count = CodeBlock.builder()
+                .beginControlFlow("synchronized ($N)", interned)
+                .addStatement("return $N.size()", interned)
+                .endControlFlow()
+                .build();
+        return addInterner(model, builder, interned, intern, count);
+    }
+
+    private static TypeSpec.Builder addInterner(PropertyModel model, TypeSpec.Builder builder,
+            FieldSpec interned, CodeBlock intern, CodeBlock count) {
+        TypeName valueType = AutoValueUtil.getAutoValueClassTypeName(model);
+        MethodSpec.Builder internMethod = MethodSpec.methodBuilder("intern")
+                .addModifiers(STATIC)
+                .addTypeVariables(model.typeVariables())
+                .returns(valueType)
+                .addParameter(valueType, "value")
+                .addCode(intern);
+        if (!model.typeVariables().isEmpty()) {
+            internMethod.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "$S", "unchecked")
+                    .build());
+        }
+        return builder.addField(interned)
+                .addField(FieldSpec.builder(AtomicLong.class, "INTERN_HITS", PRIVATE, STATIC,
+                        FINAL).initializer("new $T()", AtomicLong.class).build())
+                .addField(FieldSpec.builder(AtomicLong.class, "INTERN_MISSES", PRIVATE, STATIC,
+                        FINAL).initializer("new $T()", AtomicLong.class).build())
+                .addMethod(internMethod.build())
+                .addMethod(MethodSpec.methodBuilder("internedCount")
+                        .addModifiers(STATIC)
+                        .returns(TypeName.INT)
+                        .addCode(count)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("internHitRate")
+                        .addModifiers(STATIC)
+                        .returns(TypeName.DOUBLE)
+                        .addStatement("long hits = INTERN_HITS.get()")
+                        .addStatement("long requests = hits + INTERN_MISSES.get()")
+                        .addStatement("return requests == 0 ? 0.0 : (double) hits / requests")
+                        .build());
+    }
+
+    // generic classes are interned as Object so one map can hold all parameterizations
+    private static TypeName internedElementType(PropertyModel model) {
+        return model.typeVariables().isEmpty() ? model.autoValueClass() : TypeName.OBJECT;
+    }
+
+    private static CodeBlock internedCast(PropertyModel model, String name) {
+        return model.typeVariables().isEmpty()
+                ? CodeBlock.of("$N", name)
+                : CodeBlock.of("($T) $N", AutoValueUtil.getAutoValueClassTypeName(model), name);
+    }
+
+    /**
+     * Adds a static factory {@code methodName} taking every property, that creates an instance of
+     * the final AutoValue class and returns its canonical instance. Requires an interner added with
+     * {@link #addWeakInterner(PropertyModel, TypeSpec.Builder)} or
+     * {@link #addBoundedInterner(PropertyModel, TypeSpec.Builder, int)}.
+     */
+    public static TypeSpec.Builder addCanonicalFactory(PropertyModel model,
+            TypeSpec.Builder builder, String methodName) {
+        MethodSpec constructor = model.constructor();
+        String[] names = new String[constructor.parameters.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = constructor.parameters.get(i).name;
+        }
+        String local = "value";
+        while (model.properties().containsKey(local)) {
+            local = "_" + local;
+        }
+        TypeName valueType = AutoValueUtil.getAutoValueClassTypeName(model);
+        return builder.addMethod(MethodSpec.methodBuilder(methodName)
+                .addModifiers(STATIC)
+                .addTypeVariables(model.typeVariables())
+                .returns(valueType)
+                .addParameters(constructor.parameters)
+                .addCode("$T $N = ", valueType, local)
+                .addCode(AutoValueUtil.newFinalClassConstructorCall(model, names))
+                .addStatement("return intern($N)", local)
+                .build());
+    }
+
+    private InternerGenerator() {
+        throw new AssertionError("No instances.");
+    }
+}
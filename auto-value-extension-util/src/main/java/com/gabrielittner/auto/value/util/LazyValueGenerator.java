@@ -0,0 +1,164 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.util.Map;
+
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.VOLATILE;
+
+/**
+ * Generates a lazy variant of an AutoValue class that keeps the raw source it was created from,
+ * like a {@code byte[]} or a row snapshot, and decodes each property on its first access:
+ * <pre>{@code
+ * final class LazyTest extends Test {
+ *   private final byte[] source$;
+ *   private volatile long decoded$0;
+ *   private volatile Test materialized$;
+ *   private int a;
+ *
+ *   LazyTest(byte[] source$) {
+ *     this.source$ = source$;
+ *   }
+ *
+ *   @Override public int a() {
+ *     if ((decoded$0 & 0x1L) == 0) {
+ *       a = Bytes.readInt(source$, 0);
+ *       decoded$0 |= 0x1L;
+ *     }
+ *     return a;
+ *   }
+ *
+ *   Test materialize() {
+ *     Test materialized = materialized$;
+ *     if (materialized == null) {
+ *       materialized = new AutoValue_Test(a());
+ *       materialized$ = materialized;
+ *     }
+ *     return materialized;
+ *   }
+ * }
+ * }</pre>
+ * The decoded value is written before its presence bit, so other threads either see it or decode
+ * it again, which requires decoding to be repeatable. Setting a bit is a plain read-modify-write
+ * of the volatile word rather than a compare-and-set: when two threads set bits of the same word
+ * at once, one bit can get lost and its property is decoded again on the next access. That's
+ * cheaper than an atomic update on every first access, and decoding has to be repeatable anyway.
+ *
+ * <p>{@code equals}, {@code hashCode} and {@code toString} are those of the materialized
+ * instance, which is created once with
+ * {@link AutoValueUtil#newFinalClassConstructorCall(PropertyModel, Object[])}. The variant
+ * extends the {@code @AutoValue} class directly instead of using
+ * {@link AutoValueUtil#newTypeSpecBuilder}, because that passes every property to the
+ * constructor up front.
+ */
+public final class LazyValueGenerator {
+
+    private final TypeName sourceType;
+    private final AccessorTable decoders;
+
+    private LazyValueGenerator(TypeName sourceType, AccessorTable decoders) {
+        this.sourceType = sourceType;
+        this.decoders = decoders;
+    }
+
+    /**
+     * @param sourceType the type of the raw source, like {@code byte[]}
+     * @param decoders the calls used to decode a property from the source
+     */
+    public static LazyValueGenerator of(TypeName sourceType, AccessorTable decoders) {
+        return new LazyValueGenerator(sourceType, decoders);
+    }
+
+    /** Generates a lazy variant that passes the property name as key to the decoders. */
+    public TypeSpec generate(PropertyModel model, String className) {
+        return generate(model, className, ImmutableMap.<String, Object>of());
+    }
+
+    /**
+     * Generates a lazy variant that passes the entry in {@code keys} to the decoders, like an
+     * offset, or the property name as a string literal if there is none.
+     */
+    public TypeSpec generate(PropertyModel model, String className, Map<String, ?> keys) {
+        TypeName valueType = AutoValueUtil.getAutoValueClassTypeName(model);
+        FieldSpec source = FieldSpec.builder(sourceType, "source$", PRIVATE, FINAL).build();
+        TypeSpec.Builder lazy = TypeSpec.classBuilder(className)
+                .addModifiers(FINAL)
+                .addTypeVariables(model.typeVariables())
+                .superclass(valueType)
+                .addField(source)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addParameter(sourceType, source.name)
+                        .addStatement("this.$N = $N", source, source)
+                        .build());
+
+        int count = model.properties().size();
+        for (int word = 0; word < (count + 63) / 64; word++) {
+            lazy.addField(FieldSpec.builder(TypeName.LONG, "decoded$" + word, PRIVATE, VOLATILE)
+                    .build());
+        }
+        FieldSpec materialized = FieldSpec.builder(valueType, "materialized$", PRIVATE, VOLATILE)
+                .build();
+        lazy.addField(materialized);
+        Object[] accessorCalls = new Object[count];
+        int i = 0;
+        for (PropertyModel.Property property : model.properties().values()) {
+            Object key = keys.get(property.name());
+            if (key == null) {
+                key = CodeBlock.of("$S", property.name());
+            }
+            String decoded = "decoded$" + (i / 64);
+            String bit = "0x" + Long.toHexString(1L << (i % 64)) + "L";
+            lazy.addField(FieldSpec.builder(property.type(), property.name(), PRIVATE).build());
+            lazy.addMethod(MethodSpec.methodBuilder(property.methodName())
+                    .addAnnotation(Override.class)
+                    .addModifiers(PUBLIC)
+                    .returns(property.type())
+                    .beginControlFlow("if (($N & $L) == 0)", decoded, bit)
+                    .addStatement("$N = $L", property.name(), decoders.read(property.type(),
+                            property.nullable(), "this." + source.name, key))
+                    .addStatement("$N |= $L", decoded, bit)
+                    .endControlFlow()
+                    .addStatement("return $N", property.name())
+                    .build());
+            accessorCalls[i++] = property.methodName() + "()";
+        }
+
+        return lazy.addMethod(MethodSpec.methodBuilder("materialize")
+                        .returns(valueType)
+                        .addStatement("$T materialized = $N", valueType, materialized)
+                        .beginControlFlow("if (materialized == null)")
+                        .addCode("materialized = ")
+                        .addCode(AutoValueUtil.newFinalClassConstructorCall(model, accessorCalls))
+                        .addStatement("$N = materialized", materialized)
+                        .endControlFlow()
+                        .addStatement("return materialized")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("equals")
+                        .addAnnotation(Override.class)
+                        .addModifiers(PUBLIC)
+                        .returns(TypeName.BOOLEAN)
+                        .addParameter(Object.class, "o")
+                        .addStatement("return materialize().equals(o)")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("hashCode")
+                        .addAnnotation(Override.class)
+                        .addModifiers(PUBLIC)
+                        .returns(TypeName.INT)
+                        .addStatement("return materialize().hashCode()")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("toString")
+                        .addAnnotation(Override.class)
+                        .addModifiers(PUBLIC)
+                        .returns(String.class)
+                        .addStatement("return materialize().toString()")
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.value.extension.AutoValueExtension.Context;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.util.Set;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import static javax.lang.model.element.Modifier.ABSTRACT;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PROTECTED;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+import static javax.lang.model.element.Modifier.TRANSIENT;
+import static javax.lang.model.element.Modifier.VOLATILE;
+
+/**
+ * Generates overrides of {@code @AutoValue} class methods that compute their result once and
+ * return the cached value afterwards.
+ */
+public final class MemoizedMethodGenerator {
+
+    /**
+     * Adds a memoizing override to {@code builder} for every method of the {@code @AutoValue}
+     * class that is annotated with an annotation named {@code annotationSimpleName}. The methods
+     * have to meet the requirements of {@link #addMemoizedMethod}.
+     */
+    public static TypeSpec.Builder addMemoizedMethods(Context context, TypeSpec.Builder builder,
+            String annotationSimpleName) {
+        for (ExecutableElement method : ElementUtil.getLocalMethods(context.autoValueClass())) {
+            if (ElementUtil.hasAnnotationWithName(method, annotationSimpleName)) {
+                addMemoizedMethod(builder, method);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Adds a field caching the result of {@code method} and an override that computes it on the
+     * first call with double-checked locking. Methods annotated with {@code @Nullable} may return
+     * {@code null}, which is cached as well. Primitive results are stored unboxed.
+     *
+     * @throws IllegalArgumentException if {@code method} is abstract, final, static or private,
+     * declares type parameters, takes parameters or returns {@code void}.
+     */
+    public static TypeSpec.Builder addMemoizedMethod(TypeSpec.Builder builder,
+            ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (modifiers.contains(ABSTRACT) || modifiers.contains(FINAL)
+                || modifiers.contains(STATIC) || modifiers.contains(PRIVATE)
+                || !method.getTypeParameters().isEmpty() || !method.getParameters().isEmpty()
+                || method.getReturnType().getKind() == TypeKind.VOID) {
+            throw new IllegalArgumentException("Can't memoize " + method + ", memoized methods"
+                    + " must be concrete, non-final, non-private, non-static, non-generic and"
+                    + " return a value without taking parameters");
+        }
+        String name = method.getSimpleName().toString();
+        TypeName type = TypeName.get(method.getReturnType());
+        boolean nullable = ElementUtil.hasAnnotationWithName(method, "Nullable");
+
+        MethodSpec.Builder override = MethodSpec.methodBuilder(name)
+                .addAnnotation(Override.class)
+                .returns(type);
+        for (Modifier modifier : modifiers) {
+            if (modifier == PUBLIC || modifier == PROTECTED) {
+                override.addModifiers(modifier);
+            }
+        }
+        for (TypeMirror thrownType : method.getThrownTypes()) {
+            override.addException(TypeName.get(thrownType));
+        }
+
+        if (type.isPrimitive() || nullable) {
+            // the flag is volatile, the value is published by writing it before the flag
+            String flag = name + "$Memoized";
+            builder.addField(FieldSpec.builder(type, name, PRIVATE, TRANSIENT).build());
+            builder.addField(FieldSpec.builder(TypeName.BOOLEAN, flag, PRIVATE, TRANSIENT,
+                    VOLATILE).build());
+            override.beginControlFlow("if (!$N)", flag)
+                    .beginControlFlow("synchronized (this)")
+                    .beginControlFlow("if (!$N)", flag)
+                    .addStatement("$N = super.$N()", name, name)
+                    .addStatement("$N = true", flag)
+                    .endControlFlow()
+                    .endControlFlow()
+                    .endControlFlow();
+        } else {
+            builder.addField(FieldSpec.builder(type, name, PRIVATE, TRANSIENT, VOLATILE).build());
+            override.beginControlFlow("if ($N == null)", name)
+                    .beginControlFlow("synchronized (this)")
+                    .beginControlFlow("if ($N == null)", name)
+                    .addStatement("$N = super.$N()", name, name)
+                    .beginControlFlow("if ($N == null)", name)
+                    .addStatement("throw new $T($S)", NullPointerException.class,
+                            name + "() cannot return null")
+                    .endControlFlow()
+                    .endControlFlow()
+                    .endControlFlow()
+                    .endControlFlow();
+        }
+        override.addStatement("return $N", name);
+        return builder.addMethod(override.build());
+    }
+
+    private MemoizedMethodGenerator() {
+        throw new AssertionError("No instances.");
+    }
+}
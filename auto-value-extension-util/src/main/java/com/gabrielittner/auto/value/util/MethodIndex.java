@@ -0,0 +1,69 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.squareup.javapoet.TypeName;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.Elements;
+
+/**
+ * Maps the {@link MethodSignature}s of a set of methods to the methods themselves. Building
+ * the index resolves every method once, lookups afterwards are a single hash probe.
+ */
+public final class MethodIndex {
+
+    private final ImmutableMap<MethodSignature, ExecutableElement> methods;
+
+    private MethodIndex(ImmutableMap<MethodSignature, ExecutableElement> methods) {
+        this.methods = methods;
+    }
+
+    public static MethodIndex of(Iterable<? extends ExecutableElement> methods) {
+        // when several methods share a signature the first one wins, like a linear scan would
+        Map<MethodSignature, ExecutableElement> index = new LinkedHashMap<>();
+        for (ExecutableElement method : methods) {
+            // the types are the same for every modifier, only resolve them once per method
+            List<? extends VariableElement> parameters = method.getParameters();
+            ImmutableList.Builder<TypeName> builder = ImmutableList.builder();
+            for (int i = 0, size = parameters.size(); i < size; i++) {
+                builder.add(TypeName.get(parameters.get(i).asType()));
+            }
+            ImmutableList<TypeName> takes = builder.build();
+            TypeName returns = TypeName.get(method.getReturnType());
+            for (Modifier modifier : method.getModifiers()) {
+                MethodSignature signature =
+                        MethodSignature.withParameters(modifier, takes, returns);
+                if (!index.containsKey(signature)) {
+                    index.put(signature, method);
+                }
+            }
+        }
+        return new MethodIndex(ImmutableMap.copyOf(index));
+    }
+
+    public static MethodIndex forLocalMethods(TypeElement cls) {
+        return of(ElementUtil.getLocalMethods(cls));
+    }
+
+    public static MethodIndex forLocalAndInheritedMethods(Elements elementUtils, TypeElement cls) {
+        return of(ElementUtil.getLocalAndInheritedMethods(elementUtils, cls));
+    }
+
+    public ExecutableElement get(MethodSignature signature) {
+        return methods.get(signature);
+    }
+
+    public ExecutableElement get(Modifier modifier, TypeName takes, TypeName returns) {
+        return get(MethodSignature.of(modifier, takes, returns));
+    }
+
+    public boolean contains(MethodSignature signature) {
+        return methods.containsKey(signature);
+    }
+}
@@ -0,0 +1,180 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.common.collect.ImmutableList;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+import java.util.List;
+import javax.lang.model.element.Modifier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public final class MethodSignature {
+
+    private static final TypeName[] KEYWORDS = {
+        TypeName.VOID, TypeName.BOOLEAN, TypeName.BYTE, TypeName.SHORT, TypeName.INT,
+        TypeName.LONG, TypeName.CHAR, TypeName.FLOAT, TypeName.DOUBLE
+    };
+    private static final int[] KEYWORD_HASHES = new int[KEYWORDS.length];
+
+    static {
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            KEYWORD_HASHES[i] = KEYWORDS[i].hashCode();
+        }
+    }
+
+    private final Modifier modifier;
+    private final ImmutableList<TypeName> takes;
+    private final TypeName returns;
+    private final int hashCode;
+
+    private MethodSignature(Modifier modifier, ImmutableList<TypeName> takes, TypeName returns) {
+        this.modifier = checkNotNull(modifier, "modifier == null");
+        this.takes = takes;
+        this.returns = checkNotNull(returns, "returns == null");
+        int hashCode = modifier.hashCode();
+        for (int i = 0, size = takes.size(); i < size; i++) {
+            hashCode = 31 * hashCode + hash(takes.get(i));
+        }
+        this.hashCode = 31 * hashCode + hash(returns);
+    }
+
+    /**
+     * A method with {@code modifier} that takes a single parameter of type {@code takes}, or no
+     * parameters if {@code takes} is {@code null}, and returns {@code returns}.
+     */
+    public static MethodSignature of(Modifier modifier, TypeName takes, TypeName returns) {
+        ImmutableList<TypeName> parameters = takes != null
+                ? ImmutableList.of(takes)
+                : ImmutableList.<TypeName>of();
+        return new MethodSignature(modifier, parameters, returns);
+    }
+
+    /**
+     * A method with {@code modifier} that takes parameters of exactly the types in {@code takes},
+     * in order, and returns {@code returns}.
+     */
+    public static MethodSignature withParameters(Modifier modifier, List<TypeName> takes,
+            TypeName returns) {
+        return new MethodSignature(modifier, ImmutableList.copyOf(takes), returns);
+    }
+
+    public Modifier modifier() {
+        return modifier;
+    }
+
+    public List<TypeName> takes() {
+        return takes;
+    }
+
+    public TypeName returns() {
+        return returns;
+    }
+
+    @Override public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof MethodSignature)) return false;
+        MethodSignature other = (MethodSignature) o;
+        return hashCode == other.hashCode
+                && modifier == other.modifier
+                && equal(takes, other.takes)
+                && equal(returns, other.returns);
+    }
+
+    @Override public int hashCode() {
+        return hashCode;
+    }
+
+    // TypeName's equals and hashCode render the type to a string on every call, these compare
+    // the structure instead and only fall back to strings for annotated types
+
+    private static int hash(TypeName type) {
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            if (type == KEYWORDS[i]) {
+                return KEYWORD_HASHES[i];
+            }
+        }
+        if (type.isAnnotated()) {
+            return type.hashCode();
+        }
+        if (type instanceof ClassName) {
+            // equal names can be split into package and simple names differently
+            return ((ClassName) type).simpleName().hashCode();
+        }
+        if (type instanceof ParameterizedTypeName) {
+            ParameterizedTypeName parameterized = (ParameterizedTypeName) type;
+            return 31 * hash(parameterized.rawType) + hash(parameterized.typeArguments);
+        }
+        if (type instanceof ArrayTypeName) {
+            return 31 * hash(((ArrayTypeName) type).componentType) + 1;
+        }
+        if (type instanceof TypeVariableName) {
+            return ((TypeVariableName) type).name.hashCode();
+        }
+        if (type instanceof WildcardTypeName) {
+            WildcardTypeName wildcard = (WildcardTypeName) type;
+            return 31 * hash(wildcard.upperBounds) + hash(wildcard.lowerBounds);
+        }
+        return type.hashCode();
+    }
+
+    private static int hash(List<TypeName> types) {
+        int hash = 1;
+        for (int i = 0, size = types.size(); i < size; i++) {
+            hash = 31 * hash + hash(types.get(i));
+        }
+        return hash;
+    }
+
+    /** Compares like {@link TypeName#equals}, without rendering the types to strings. */
+    static boolean equal(TypeName a, TypeName b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.getClass() != b.getClass() || a.isAnnotated() || b.isAnnotated()
+                || !(a instanceof ClassName || a instanceof ParameterizedTypeName
+                || a instanceof ArrayTypeName || a instanceof TypeVariableName
+                || a instanceof WildcardTypeName)) {
+            return a.equals(b);
+        }
+        if (a instanceof ClassName) {
+            return ((ClassName) a).compareTo((ClassName) b) == 0;
+        }
+        if (a instanceof ParameterizedTypeName) {
+            ParameterizedTypeName parameterizedA = (ParameterizedTypeName) a;
+            ParameterizedTypeName parameterizedB = (ParameterizedTypeName) b;
+            return equal(parameterizedA.rawType, parameterizedB.rawType)
+                    && equal(parameterizedA.typeArguments, parameterizedB.typeArguments);
+        }
+        if (a instanceof ArrayTypeName) {
+            return equal(((ArrayTypeName) a).componentType, ((ArrayTypeName) b).componentType);
+        }
+        if (a instanceof TypeVariableName) {
+            return ((TypeVariableName) a).name.equals(((TypeVariableName) b).name);
+        }
+        WildcardTypeName wildcardA = (WildcardTypeName) a;
+        WildcardTypeName wildcardB = (WildcardTypeName) b;
+        return equal(wildcardA.upperBounds, wildcardB.upperBounds)
+                && equal(wildcardA.lowerBounds, wildcardB.lowerBounds);
+    }
+
+    private static boolean equal(List<TypeName> a, List<TypeName> b) {
+        int size = a.size();
+        if (size != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!equal(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override public String toString() {
+        return modifier + " " + returns + " (" + takes + ")";
+    }
+}
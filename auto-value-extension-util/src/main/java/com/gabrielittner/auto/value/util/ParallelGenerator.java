@@ -0,0 +1,81 @@
+package com.gabrielittner.auto.value.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders code for many {@link PropertyModel}s in parallel. Models hold no javac objects, so the
+ * {@link Renderer} can run on any thread as long as it only uses the model and JavaPoet. The
+ * results are handed back to the calling thread, in the order of the models, which can then
+ * write them with the {@link javax.annotation.processing.Filer}.
+ */
+public final class ParallelGenerator {
+
+    private static final int DEFAULT_BATCH_SIZE = 8;
+
+    public interface Renderer<T> {
+        T render(PropertyModel model);
+    }
+
+    public static <T> List<T> renderAll(ForkJoinPool pool, List<PropertyModel> models,
+            Renderer<? extends T> renderer) {
+        return renderAll(pool, models, renderer, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Renders {@code models} on {@code pool}, splitting them until at most {@code batchSize}
+     * models are left per task. Exceptions thrown by {@code renderer} are rethrown here.
+     */
+    public static <T> List<T> renderAll(ForkJoinPool pool, List<PropertyModel> models,
+            Renderer<? extends T> renderer, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize < 1: " + batchSize);
+        }
+        Object[] results = new Object[models.size()];
+        pool.invoke(new RenderTask(models, renderer, results, 0, results.length, batchSize));
+        @SuppressWarnings("unchecked") // only contains results of renderer
+        List<T> list = (List<T>) new ArrayList<>(Arrays.asList(results));
+        return list;
+    }
+
+    private static final class RenderTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 0L;
+
+        private final List<PropertyModel> models;
+        private final Renderer<?> renderer;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int batchSize;
+
+        RenderTask(List<PropertyModel> models, Renderer<?> renderer, Object[] results, int from,
+                int to, int batchSize) {
+            this.models = models;
+            this.renderer = renderer;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+        }
+
+        @Override protected void compute() {
+            if (to - from <= batchSize) {
+                for (int i = from; i < to; i++) {
+                    results[i] = renderer.render(models.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RenderTask(models, renderer, results, from, middle, batchSize),
+                    new RenderTask(models, renderer, results, middle, to, batchSize));
+        }
+    }
+
+    private ParallelGenerator() {
+        throw new AssertionError("No instances.");
+    }
+}
@@ -0,0 +1,163 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.value.extension.AutoValueExtension.Context;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeVariableName;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+
+/**
+ * The resolved properties of an {@code @AutoValue} class. It is computed once per class and
+ * shared by all extensions that generate code for it, and holds no references to javac objects.
+ */
+public final class PropertyModel {
+
+    // dropped by RoundTracker after every round, entries reference the properties' elements
+    private static final Cache<TypeElement, Entry> MODELS = CacheBuilder.newBuilder()
+            .maximumSize(1024)
+            .build();
+
+    private final ClassName autoValueClass;
+    private final ImmutableList<TypeVariableName> typeVariables;
+    private final ImmutableMap<String, Property> properties;
+    private final MethodSpec constructor;
+
+    private PropertyModel(ClassName autoValueClass, ImmutableList<TypeVariableName> typeVariables,
+            ImmutableMap<String, Property> properties) {
+        this.autoValueClass = autoValueClass;
+        this.typeVariables = typeVariables;
+        this.properties = properties;
+        this.constructor = AutoValueUtil.newConstructor(properties.values());
+    }
+
+    /**
+     * Returns the model for the {@code @AutoValue} class of {@code context}, resolving it only
+     * for the first extension that asks.
+     */
+    public static PropertyModel get(Context context) {
+        TypeElement autoValueClass = context.autoValueClass();
+        Map<String, ExecutableElement> properties = context.properties();
+        Entry entry = MODELS.getIfPresent(autoValueClass);
+        // properties are replaced when an extension consumes some of them
+        if (entry == null || entry.properties != properties) {
+            entry = new Entry(properties, of(context));
+            MODELS.put(autoValueClass, entry);
+        }
+        return entry.model;
+    }
+
+    static PropertyModel of(Context context) {
+        TypeElement autoValueClass = context.autoValueClass();
+        List<? extends TypeParameterElement> parameters = autoValueClass.getTypeParameters();
+        ImmutableList.Builder<TypeVariableName> typeVariables = ImmutableList.builder();
+        for (int i = 0, size = parameters.size(); i < size; i++) {
+            typeVariables.add(TypeVariableName.get(parameters.get(i)));
+        }
+
+        ImmutableMap.Builder<String, Property> properties = ImmutableMap.builder();
+        for (Map.Entry<String, ExecutableElement> entry : context.properties().entrySet()) {
+            String name = entry.getKey();
+            ExecutableElement method = entry.getValue();
+            ImmutableSet<String> annotations = ElementUtil.buildAnnotations(method);
+            properties.put(name, new Property(name, method.getSimpleName().toString(),
+                    TypeName.get(method.getReturnType()), annotations,
+                    annotations.contains("Nullable")));
+        }
+
+        ClassName className = ClassName.get(context.packageName(),
+                autoValueClass.getSimpleName().toString());
+        return new PropertyModel(className, typeVariables.build(), properties.build());
+    }
+
+    static void invalidateAll() {
+        MODELS.invalidateAll();
+    }
+
+    public String packageName() {
+        return autoValueClass.packageName();
+    }
+
+    public ClassName autoValueClass() {
+        return autoValueClass;
+    }
+
+    public ImmutableList<TypeVariableName> typeVariables() {
+        return typeVariables;
+    }
+
+    public ImmutableMap<String, Property> properties() {
+        return properties;
+    }
+
+    /**
+     * The constructor of a generated subclass, taking every property in order and passing them
+     * on to {@code super}.
+     */
+    public MethodSpec constructor() {
+        return constructor;
+    }
+
+    public static final class Property {
+
+        private final String name;
+        private final String methodName;
+        private final TypeName type;
+        private final ImmutableSet<String> annotations;
+        private final boolean nullable;
+
+        Property(String name, String methodName, TypeName type, ImmutableSet<String> annotations,
+                boolean nullable) {
+            this.name = name;
+            this.methodName = methodName;
+            this.type = type;
+            this.annotations = annotations;
+            this.nullable = nullable;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /** The name of the abstract accessor, which differs from the name for get/is prefixes. */
+        public String methodName() {
+            return methodName;
+        }
+
+        public TypeName type() {
+            return type;
+        }
+
+        /** Simple names of the annotations on the accessor. */
+        public ImmutableSet<String> annotations() {
+            return annotations;
+        }
+
+        public boolean nullable() {
+            return nullable;
+        }
+
+        @Override public String toString() {
+            return type + " " + name;
+        }
+    }
+
+    private static final class Entry {
+        final Map<String, ExecutableElement> properties;
+        final PropertyModel model;
+
+        Entry(Map<String, ExecutableElement> properties, PropertyModel model) {
+            this.properties = properties;
+            this.model = model;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.service.AutoService;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Gets called in every processing round to drop cached state that a new round can make stale,
+ * like relations between type mirrors, types that were missing and everything cached for the
+ * elements of the previous round. It writes {@link ValueClassRegistry} registries once AutoValue processed all their
+ * classes and the {@link ExtensionProfiler} report at the end. It never claims any annotations.
+ */
+@AutoService(Processor.class)
+public final class RoundTracker extends AbstractProcessor {
+
+    @Override public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        ElementUtil.track(processingEnv.getElementUtils());
+        ValueClassRegistry.track(processingEnv);
+    }
+
+    @Override public Set<String> getSupportedOptions() {
+        return ExtensionProfiler.OPTIONS;
+    }
+
+    @Override public Set<String> getSupportedAnnotationTypes() {
+        // AutoValue never claims its annotation, so this still runs whenever extensions do
+        return ImmutableSet.of(AutoValue.class.getName());
+    }
+
+    @Override public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override public boolean process(Set<? extends TypeElement> annotations,
+            RoundEnvironment roundEnv) {
+        ElementUtil.invalidateTypeRelations();
+        ElementUtil.invalidateElementCaches(processingEnv.getElementUtils());
+        AnnotationIndex.invalidateAll();
+        PropertyModel.invalidateAll();
+        ValueClassRegistry.process(processingEnv, roundEnv);
+        if (roundEnv.processingOver()) {
+            ExtensionProfiler.writeReport(processingEnv);
+        }
+        return false;
+    }
+}
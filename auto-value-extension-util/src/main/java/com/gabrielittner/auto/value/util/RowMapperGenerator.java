@@ -0,0 +1,205 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+
+/**
+ * Generates mappers that create AutoValue instances from the rows of a {@code Cursor}-like
+ * source. A mapper resolves all column indices once in its constructor, so reading a row is
+ * only typed reads and one constructor call:
+ * <pre>{@code
+ * final class TestMapper {
+ *   private final int aIndex;
+ *
+ *   TestMapper(Cursor cursor) {
+ *     this.aIndex = cursor.getColumnIndexOrThrow("a");
+ *   }
+ *
+ *   Test read(Cursor cursor) {
+ *     int a = cursor.getInt(this.aIndex);
+ *     return new AutoValue_Test(a);
+ *   }
+ *
+ *   List<Test> readAll(Cursor cursor) {
+ *     List<Test> result = new ArrayList<Test>(cursor.getCount());
+ *     while (cursor.moveToNext()) {
+ *       result.add(read(cursor));
+ *     }
+ *     return result;
+ *   }
+ * }
+ * }</pre>
+ * Rows are turned into instances with
+ * {@link AutoValueUtil#newFinalClassConstructorCall(PropertyModel, Object[])}, which decides the
+ * package a mapper can be generated into.
+ */
+public final class RowMapperGenerator {
+
+    private static final ClassName LIST = ClassName.get(List.class);
+    private static final ClassName ARRAY_LIST = ClassName.get(ArrayList.class);
+
+    private final TypeName sourceType;
+    private final AccessorTable accessors;
+    private final String columnIndex;
+    private final String moveToNext;
+    private final String count;
+
+    private RowMapperGenerator(Builder builder) {
+        this.sourceType = builder.sourceType;
+        this.accessors = builder.accessors;
+        this.columnIndex = builder.columnIndex;
+        this.moveToNext = builder.moveToNext;
+        this.count = builder.count;
+    }
+
+    /**
+     * @param sourceType the type rows are read from, like {@code android.database.Cursor}
+     * @param accessors the calls used to read a column, the key is the resolved column index
+     */
+    public static Builder builder(TypeName sourceType, AccessorTable accessors) {
+        return new Builder(sourceType, accessors);
+    }
+
+    /** Generates a mapper reading each property from the column with the property's name. */
+    public TypeSpec generate(PropertyModel model, String className) {
+        return generate(model, className, ImmutableMap.<String, String>of());
+    }
+
+    /**
+     * Generates a mapper reading each property from the column in {@code columnNames}, or the
+     * column with the property's name if it has no entry.
+     */
+    public TypeSpec generate(PropertyModel model, String className,
+            Map<String, String> columnNames) {
+        Collection<PropertyModel.Property> properties = model.properties().values();
+        String source = sourceName(model);
+        TypeName valueType = AutoValueUtil.getAutoValueClassTypeName(model);
+
+        MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+                .addParameter(sourceType, source);
+        MethodSpec.Builder read = MethodSpec.methodBuilder("read")
+                .returns(valueType)
+                .addParameter(sourceType, source);
+        List<FieldSpec> fields = new ArrayList<>(properties.size());
+        Object[] names = new Object[properties.size()];
+        int i = 0;
+        for (PropertyModel.Property property : properties) {
+            String column = columnNames.get(property.name());
+            if (column == null) {
+                column = property.name();
+            }
+            FieldSpec field = FieldSpec.builder(TypeName.INT, property.name() + "Index",
+                    PRIVATE, FINAL).build();
+            fields.add(field);
+            constructor.addStatement("this.$N = $L", field,
+                    AccessorTable.format(columnIndex, source, CodeBlock.of("$L",
+                            FieldNameDispatchGenerator.stringLiteral(column))));
+            read.addStatement("$T $N = $L", property.type(), property.name(),
+                    accessors.read(property.type(), property.nullable(), source,
+                            "this." + field.name));
+            names[i++] = property.name();
+        }
+        read.addCode("return ")
+                .addCode(AutoValueUtil.newFinalClassConstructorCall(model, names));
+
+        TypeSpec.Builder mapper = TypeSpec.classBuilder(className)
+                .addModifiers(FINAL)
+                .addTypeVariables(model.typeVariables())
+                .addFields(fields)
+                .addMethod(constructor.build())
+                .addMethod(read.build());
+        if (moveToNext != null) {
+            mapper.addMethod(readAll(valueType, source));
+        }
+        return mapper.build();
+    }
+
+    private MethodSpec readAll(TypeName valueType, String source) {
+        TypeName listType = ParameterizedTypeName.get(LIST, valueType);
+        TypeName arrayListType = ParameterizedTypeName.get(ARRAY_LIST, valueType);
+        MethodSpec.Builder readAll = MethodSpec.methodBuilder("readAll")
+                .returns(listType)
+                .addParameter(sourceType, source);
+        if (count != null) {
+            readAll.addStatement("$T result = new $T($L)", listType, arrayListType,
+                    AccessorTable.format(count, source));
+        } else {
+            readAll.addStatement("$T result = new $T()", listType, arrayListType);
+        }
+        return readAll.beginControlFlow("while ($L)", AccessorTable.format(moveToNext, source))
+                .addStatement("result.add(read($N))", source)
+                .endControlFlow()
+                .addStatement("return result")
+                .build();
+    }
+
+    /** Picks a parameter name that doesn't clash with the locals declared for each property. */
+    private static String sourceName(PropertyModel model) {
+        String name = "source";
+        while (model.properties().containsKey(name)) {
+            name = "_" + name;
+        }
+        return name;
+    }
+
+    public static final class Builder {
+
+        private final TypeName sourceType;
+        private final AccessorTable accessors;
+        private String columnIndex;
+        private String moveToNext;
+        private String count;
+
+        private Builder(TypeName sourceType, AccessorTable accessors) {
+            this.sourceType = sourceType;
+            this.accessors = accessors;
+        }
+
+        /**
+         * An expression returning the index of the column named {@code $2L} in source
+         * {@code $1L}, like {@code "$1L.getColumnIndexOrThrow($2L)"}. Required.
+         */
+        public Builder columnIndex(String format) {
+            this.columnIndex = format;
+            return this;
+        }
+
+        /**
+         * A boolean expression advancing source {@code $1L} to the next row, like
+         * {@code "$1L.moveToNext()"}. Enables {@code readAll}.
+         */
+        public Builder moveToNext(String format) {
+            this.moveToNext = format;
+            return this;
+        }
+
+        /**
+         * An expression returning the row count of source {@code $1L}, like
+         * {@code "$1L.getCount()"}. Used to presize the list returned by {@code readAll}.
+         */
+        public Builder count(String format) {
+            this.count = format;
+            return this;
+        }
+
+        public RowMapperGenerator build() {
+            if (columnIndex == null) {
+                throw new IllegalStateException("columnIndex is required");
+            }
+            return new RowMapperGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.gabrielittner.auto.value.util;
+
+/**
+ * How the parameter and return types of a method are compared to the requested types in
+ * {@link ElementUtil#getStaticMethod(javax.lang.model.util.Types,
+ * javax.lang.model.element.TypeElement, javax.lang.model.type.TypeMirror,
+ * javax.lang.model.type.TypeMirror, TypeMatch)} and similar methods.
+ */
+public enum TypeMatch {
+    /** The types have to be the same, including type arguments. */
+    EXACT,
+    /**
+     * The types have to be the same after erasure, so {@code List<String>} matches {@code List}.
+     */
+    ERASURE,
+    /**
+     * The method's type has to be assignable to the requested type, so requesting
+     * {@code Cursor} matches parameters of any {@code Cursor} subtype and requesting the raw
+     * {@code TypeAdapter} matches any {@code TypeAdapter<T>} return type.
+     */
+    ASSIGNABLE
+}
@@ -0,0 +1,290 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.AutoValueExtension.Context;
+import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Collects the {@code @AutoValue} classes an extension handled and generates one registry
+ * class that maps each of them to a factory, so finding it at runtime needs no reflection:
+ * <pre>{@code
+ * public final class JsonAdapters {
+ *   public static JsonAdapter<?> create(Class<?> type, Moshi moshi) {
+ *     switch (type.getName()) {
+ *       case "com.example.User":
+ *         return User.jsonAdapter(moshi);
+ *       default:
+ *         return null;
+ *     }
+ *   }
+ * }
+ * }</pre>
+ * Extensions call {@link #register} from {@code generateClass}. {@link RoundTracker} has to run
+ * in the same compilation: it writes the registry once AutoValue generated a class for every
+ * {@code @AutoValue} class it has seen, including the ones AutoValue deferred to a later round
+ * because they reference generated types, so the registry is compiled like any other source.
+ * Without it {@code register} reports an error as soon as a round passed. Factories have to be
+ * accessible from the registry's package, a package private {@code AutoValue_} class can only be
+ * used from a registry in its package.
+ */
+public final class ValueClassRegistry {
+
+    // Keyed by the compilation's Elements instead of its ProcessingEnvironment, which build tools
+    // may wrap for each processor. Registrations can happen before RoundTracker was initialized,
+    // javac initializes processors lazily in the order it discovers them.
+    private static final LoadingCache<Elements, State> STATES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<Elements, State>() {
+                @Override public State load(Elements elements) {
+                    return new State();
+                }
+            });
+
+    private final ClassName className;
+    private final String methodName;
+    private final TypeName returnType;
+    private final List<ParameterSpec> parameters;
+
+    private ValueClassRegistry(Builder builder) {
+        this.className = builder.className;
+        this.methodName = builder.methodName;
+        this.returnType = builder.returnType;
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(builder.parameters));
+    }
+
+    public static Builder builder(ClassName className) {
+        return new Builder(className);
+    }
+
+    /**
+     * Adds the {@code @AutoValue} class of {@code context} to this registry. {@code factory} is
+     * the expression returned for it and may use the registry method's parameters, like
+     * {@code CodeBlock.of("$T.jsonAdapter(moshi)", getAutoValueClassClassName(context))}.
+     */
+    public void register(Context context, CodeBlock factory) {
+        TypeElement autoValueClass = context.autoValueClass();
+        Elements elements = context.processingEnvironment().getElementUtils();
+        String binaryName = elements.getBinaryName(autoValueClass).toString();
+        State state = STATES.getUnchecked(elements);
+        synchronized (state) {
+            if (!state.tracked && !state.reportedUntracked
+                    && anyExists(elements, state.untrackedClasses)) {
+                // AutoValue generated a class registered earlier, so a round passed without
+                // RoundTracker, which javac would have initialized in that round
+                state.reportedUntracked = true;
+                context.processingEnvironment().getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Registry " + className + " won't be generated, RoundTracker isn't"
+                                + " running in this compilation. Add "
+                                + RoundTracker.class.getName() + " to the annotation processors.",
+                        autoValueClass);
+            }
+            if (!state.tracked) {
+                state.untrackedClasses.add(generatedClassName(autoValueClass));
+            }
+            Pending pending = state.pending.get(className);
+            if (pending == null) {
+                pending = new Pending(this);
+                state.pending.put(className, pending);
+            } else if (!pending.registry.sameMethod(this)) {
+                throw new IllegalArgumentException("Registry " + className
+                        + " was already defined with a different method");
+            }
+            pending.factories.put(binaryName, factory);
+            pending.originatingElements.add(autoValueClass);
+        }
+    }
+
+    private static boolean anyExists(Elements elements, Collection<String> classNames) {
+        for (String name : classNames) {
+            if (elements.getTypeElement(name) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the final class AutoValue generates for autoValueClass, like AutoValue_Outer_Inner
+    private static String generatedClassName(TypeElement autoValueClass) {
+        ClassName className = ClassName.get(autoValueClass);
+        String packageName = className.packageName();
+        String simpleName = "AutoValue_" + Joiner.on('_').join(className.simpleNames());
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+
+    private boolean sameMethod(ValueClassRegistry other) {
+        return methodName.equals(other.methodName) && returnType.equals(other.returnType)
+                && parameters.equals(other.parameters);
+    }
+
+    TypeSpec generate(Map<String, CodeBlock> factories) {
+        TypeName classType = ParameterizedTypeName.get(ClassName.get(Class.class),
+                WildcardTypeName.subtypeOf(Object.class));
+        MethodSpec.Builder method = MethodSpec.methodBuilder(methodName)
+                .addModifiers(PUBLIC, STATIC)
+                .returns(returnType)
+                .addParameter(classType, "type")
+                .addParameters(parameters)
+                .beginControlFlow("switch (type.getName())");
+        for (Map.Entry<String, CodeBlock> entry : factories.entrySet()) {
+            method.addCode("case $S:\n$>", entry.getKey())
+                    .addStatement("return $L", entry.getValue())
+                    .addCode("$<");
+        }
+        method.addCode("default:\n$>")
+                .addStatement("return null")
+                .addCode("$<")
+                .endControlFlow();
+        return TypeSpec.classBuilder(className.simpleName())
+                .addModifiers(PUBLIC, FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(PRIVATE)
+                        .addStatement("throw new $T($S)", AssertionError.class, "No instances.")
+                        .build())
+                .addMethod(method.build())
+                .build();
+    }
+
+    /** Called by {@link RoundTracker} when it's initialized for a compilation. */
+    static void track(ProcessingEnvironment processingEnv) {
+        State state = STATES.getUnchecked(processingEnv.getElementUtils());
+        synchronized (state) {
+            state.tracked = true;
+            state.untrackedClasses.clear();
+        }
+    }
+
+    /**
+     * Called by {@link RoundTracker} in every round. Writes all registries with newly registered
+     * classes once every {@code @AutoValue} class seen so far has its generated class, or when
+     * processing is over.
+     */
+    static void process(ProcessingEnvironment processingEnv, RoundEnvironment roundEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        State state = STATES.getUnchecked(elements);
+        List<Pending> pending;
+        synchronized (state) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(AutoValue.class)) {
+                if (element instanceof TypeElement) {
+                    state.ungenerated.add(generatedClassName((TypeElement) element));
+                }
+            }
+            for (Iterator<String> i = state.ungenerated.iterator(); i.hasNext(); ) {
+                if (elements.getTypeElement(i.next()) != null) {
+                    i.remove();
+                }
+            }
+            if (!state.ungenerated.isEmpty() && !roundEnv.processingOver()) {
+                return;
+            }
+            pending = new ArrayList<>(state.pending.size());
+            for (Pending registry : state.pending.values()) {
+                if (state.written.add(registry.registry.className)) {
+                    pending.add(registry);
+                } else {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Registry "
+                            + registry.registry.className + " was already generated, but these"
+                            + " classes were processed later: " + registry.factories.keySet());
+                }
+            }
+            state.pending.clear();
+        }
+        for (Pending registry : pending) {
+            ClassName className = registry.registry.className;
+            TypeSpec type = registry.registry.generate(registry.factories);
+            JavaFile javaFile = JavaFile.builder(className.packageName(), type).build();
+            try {
+                AutoValueUtil.writeJavaFile(processingEnv.getFiler(), javaFile,
+                        registry.originatingElements);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to write registry " + className + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class State {
+        // registries with classes that haven't been written yet, by registry class
+        final Map<ClassName, Pending> pending = new LinkedHashMap<>();
+        final Set<ClassName> written = new HashSet<>();
+        // @AutoValue classes without their generated class yet, by the generated class' name
+        final Set<String> ungenerated = new HashSet<>();
+        // classes registered before RoundTracker was initialized
+        final List<String> untrackedClasses = new ArrayList<>();
+        boolean tracked;
+        boolean reportedUntracked;
+    }
+
+    private static final class Pending {
+        final ValueClassRegistry registry;
+        // sorted so the registry doesn't depend on the order classes were processed in
+        final Map<String, CodeBlock> factories = new TreeMap<>();
+        final List<Element> originatingElements = new ArrayList<>();
+
+        Pending(ValueClassRegistry registry) {
+            this.registry = registry;
+        }
+    }
+
+    public static final class Builder {
+
+        private final ClassName className;
+        private final List<ParameterSpec> parameters = new ArrayList<>();
+        private String methodName = "create";
+        private TypeName returnType = TypeName.OBJECT;
+
+        private Builder(ClassName className) {
+            this.className = className;
+        }
+
+        /** The name and return type of the lookup method, {@code Object create} by default. */
+        public Builder method(String methodName, TypeName returnType) {
+            this.methodName = methodName;
+            this.returnType = returnType;
+            return this;
+        }
+
+        /** Adds a parameter of the lookup method that factories can use. */
+        public Builder addParameter(TypeName type, String name) {
+            parameters.add(ParameterSpec.builder(type, name).build());
+            return this;
+        }
+
+        public ValueClassRegistry build() {
+            return new ValueClassRegistry(this);
+        }
+    }
+}
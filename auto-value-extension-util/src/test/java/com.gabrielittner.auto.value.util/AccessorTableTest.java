@@ -0,0 +1,75 @@
+package com.gabrielittner.auto.value.util;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.TypeName;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class AccessorTableTest {
+
+    private static final TypeName STRING = ClassName.get(String.class);
+
+    private final AccessorTable cursor = AccessorTable.builder()
+            .read(TypeName.INT, "$1L.getInt($2L)")
+            .read(STRING, "$1L.getString($2L)")
+            .readNull("$1L.isNull($2L)")
+            .write(TypeName.INT, "$1L.put($2L, $3L)")
+            .write(STRING, "$1L.put($2L, $3L)")
+            .writeNull("$1L.putNull($2L)")
+            .build();
+
+    @Test
+    public void readPrimitive() {
+        assertThat(cursor.read(TypeName.INT, false, "cursor", 0).toString())
+                .isEqualTo("cursor.getInt(0)");
+        // nullable has no effect on primitives
+        assertThat(cursor.read(TypeName.INT, true, "cursor", 0).toString())
+                .isEqualTo("cursor.getInt(0)");
+    }
+
+    @Test
+    public void readBoxed() {
+        assertThat(cursor.canRead(TypeName.INT.box())).isTrue();
+        assertThat(cursor.read(TypeName.INT.box(), false, "cursor", 1).toString())
+                .isEqualTo("cursor.getInt(1)");
+        assertThat(cursor.read(TypeName.INT.box(), true, "cursor", 1).toString())
+                .isEqualTo("(cursor.isNull(1) ? null : cursor.getInt(1))");
+    }
+
+    @Test
+    public void readUnsupported() {
+        assertThat(cursor.canRead(TypeName.LONG)).isFalse();
+        try {
+            cursor.read(TypeName.LONG, false, "cursor", 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void write() {
+        assertThat(cursor.write(TypeName.INT, false, "values", "\"a\"", "a").toString())
+                .isEqualTo("values.put(\"a\", a);\n");
+        assertThat(cursor.write(STRING, true, "values", "\"b\"", "b").toString())
+                .isEqualTo(""
+                        + "if (b == null) {\n"
+                        + "  values.putNull(\"b\");\n"
+                        + "} else {\n"
+                        + "  values.put(\"b\", b);\n"
+                        + "}\n");
+    }
+
+    @Test
+    public void writeNullWithoutWriteNullCall() {
+        AccessorTable table = AccessorTable.builder()
+                .write(STRING, "$1L.writeString($3L)")
+                .build();
+        assertThat(table.write(STRING, true, "out", null, "b").toString())
+                .isEqualTo(""
+                        + "if (b != null) {\n"
+                        + "  out.writeString(b);\n"
+                        + "}\n");
+    }
+}
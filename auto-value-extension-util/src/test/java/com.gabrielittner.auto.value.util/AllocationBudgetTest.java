@@ -0,0 +1,347 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.testing.compile.CompilationRule;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.List;
+import java.util.concurrent.Callable;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Fails when a helper allocates more than its budget of bytes per call, measured with the current
+ * thread's allocation counter after its caches are warm. Budgets are given in terms of baselines
+ * measured in the same run, like a cache hit or a {@link TypeName} conversion, instead of fixed
+ * numbers that depend on the JDK.
+ */
+public class AllocationBudgetTest {
+
+    private static final int WARMUP = 2000;
+    private static final int CALLS = 1000;
+    // absorbs the counter's own noise, far less than any object per call
+    private static final long TOLERANCE = 8;
+
+    @Rule public CompilationRule compilationRule = new CompilationRule();
+
+    private Elements elements;
+    private Types types;
+    private TypeElement small;
+    private TypeElement large;
+
+    // results are written here so the calls can't be optimized away
+    private Object sink;
+
+    @SuppressWarnings("unused")
+    private static abstract class SmallClass {
+        public abstract int a();
+        @Nullable public abstract String b();
+        abstract void c(String c);
+        static int d(String d) {
+            return 0;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static abstract class LargeClass {
+        public abstract int a0();
+        public abstract int a1();
+        public abstract int a2();
+        public abstract int a3();
+        public abstract int a4();
+        public abstract int a5();
+        public abstract int a6();
+        public abstract int a7();
+        abstract void b0(long b);
+        abstract void b1(double b);
+        abstract void b2(Object b);
+        abstract void b3(Integer b);
+        abstract void c(String c);
+        static long e0(String e) {
+            return 0;
+        }
+        static double e1(String e) {
+            return 0;
+        }
+        static String e2(String e) {
+            return null;
+        }
+        static int d(String d) {
+            return 0;
+        }
+    }
+
+    @Retention(RUNTIME)
+    @Target(METHOD)
+    private @interface Nullable { }
+
+    @Before
+    public void setUp() {
+        assumeTrue(ExtensionProfiler.isAllocationCountingSupported());
+        elements = compilationRule.getElements();
+        types = compilationRule.getTypes();
+        ElementUtil.track(elements);
+        small = elements.getTypeElement(SmallClass.class.getCanonicalName());
+        large = elements.getTypeElement(LargeClass.class.getCanonicalName());
+    }
+
+    private long bytesPerCall(int calls, Callable<?> call) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            sink = call.call();
+        }
+        long start = ExtensionProfiler.allocatedBytes();
+        for (int i = 0; i < calls; i++) {
+            sink = call.call();
+        }
+        return (ExtensionProfiler.allocatedBytes() - start) / calls;
+    }
+
+    private long bytesPerCall(Callable<?> call) throws Exception {
+        return bytesPerCall(CALLS, call);
+    }
+
+    private void assertNoMoreThan(String helper, long bytes, String reference, long limit) {
+        assertWithMessage(helper + " allocated " + bytes + " bytes per call, " + reference
+                + " allocated " + limit).that(bytes).isAtMost(limit + TOLERANCE);
+    }
+
+    private ExecutableElement method(String name) {
+        for (ExecutableElement method : ElementUtil.getLocalMethods(small)) {
+            if (method.getSimpleName().contentEquals(name)) {
+                return method;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    // a hit on a bounded cache allocates for its recency queue, nothing beyond that is expected
+    private long cacheHit() throws Exception {
+        final Cache<TypeElement, Object> cache = CacheBuilder.newBuilder()
+                .maximumSize(4096)
+                .recordStats()
+                .build();
+        cache.put(small, small);
+        return bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return cache.getIfPresent(small);
+            }
+        });
+    }
+
+    @Test
+    public void cacheHitsOnlyAllocateForTheCache() throws Exception {
+        long cacheHit = cacheHit();
+        assertNoMoreThan("getLocalMethods", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.getLocalMethods(small);
+            }
+        }), "a cache hit", cacheHit);
+        assertNoMoreThan("getLocalAndInheritedMethods", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.getLocalAndInheritedMethods(elements, small);
+            }
+        }), "a cache hit", cacheHit);
+        final ClassName string = ClassName.get(String.class);
+        assertNoMoreThan("typeExists", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.typeExists(elements, string);
+            }
+        }), "a cache hit", cacheHit);
+    }
+
+    private long signature(final TypeName takes, final TypeName returns) throws Exception {
+        return bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return MethodSignature.of(Modifier.STATIC, takes, returns);
+            }
+        });
+    }
+
+    @Test
+    public void getStaticMethod() throws Exception {
+        final TypeName string = ClassName.get(String.class);
+        assertNoMoreThan("getStaticMethod", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.getStaticMethod(small, string, TypeName.INT);
+            }
+        }), "creating its signature and a cache hit", signature(string, TypeName.INT) + cacheHit());
+    }
+
+    @Test
+    public void getAbstractMethod() throws Exception {
+        final TypeName string = ClassName.get(String.class);
+        assertNoMoreThan("getAbstractMethod", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.getAbstractMethod(elements, small, string, TypeName.VOID);
+            }
+        }), "creating its signature and a cache hit",
+                signature(string, TypeName.VOID) + cacheHit());
+    }
+
+    @Test
+    public void getAbstractMethodWithMirrors() throws Exception {
+        final TypeMirror string = elements.getTypeElement("java.lang.String").asType();
+        final TypeMirror voidType = types.getNoType(TypeKind.VOID);
+        // javac may create the modifier set of every candidate on each call
+        final List<ExecutableElement> candidates =
+                ElementUtil.getLocalAndInheritedMethods(elements, small).asList();
+        long modifiers = bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                Object modifiers = null;
+                for (int i = 0, size = candidates.size(); i < size; i++) {
+                    modifiers = candidates.get(i).getModifiers();
+                }
+                return modifiers;
+            }
+        });
+        assertNoMoreThan("getAbstractMethod with mirrors", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.getAbstractMethod(elements, types, small, string, voidType);
+            }
+        }), "a cache hit and the modifiers of every candidate", cacheHit() + modifiers);
+    }
+
+    @Test
+    public void methodTakes() throws Exception {
+        final ExecutableElement c = method("c");
+        final TypeName string = ClassName.get(String.class);
+        long typeName = bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return TypeName.get(c.getParameters().get(0).asType());
+            }
+        });
+        assertNoMoreThan("methodTakes", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.methodTakes(c, string);
+            }
+        }), "converting the parameter to a TypeName", typeName);
+    }
+
+    // rendering the simple name of every annotation on b() once and iterating over them
+    private long annotationNames(final ExecutableElement b) throws Exception {
+        return bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                Object name = null;
+                for (AnnotationMirror annotation : b.getAnnotationMirrors()) {
+                    name = annotation.getAnnotationType().asElement().getSimpleName().toString();
+                }
+                return name;
+            }
+        });
+    }
+
+    @Test
+    public void hasAnnotationWithName() throws Exception {
+        final ExecutableElement b = method("b");
+        assertNoMoreThan("hasAnnotationWithName", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.hasAnnotationWithName(b, "Nullable");
+            }
+        }), "rendering the annotation names", annotationNames(b));
+    }
+
+    @Test
+    public void buildAnnotations() throws Exception {
+        final ExecutableElement b = method("b");
+        long set = bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ImmutableSet.builder().add("Nullable").build();
+            }
+        });
+        assertNoMoreThan("buildAnnotations", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.buildAnnotations(b);
+            }
+        }), "rendering the annotation names and building a set of them",
+                annotationNames(b) + set);
+    }
+
+    @Test
+    public void newTypeSpecBuilder() throws Exception {
+        final TestContext context = new TestContext(small);
+        final PropertyModel model = PropertyModel.get(context);
+        long byHand = bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return TypeSpec.classBuilder("AutoValue_Test")
+                        .addModifiers(Modifier.FINAL)
+                        .addTypeVariables(model.typeVariables())
+                        .superclass(ClassName.get(model.packageName(), "$AutoValue_Test"))
+                        .addMethod(model.constructor());
+            }
+        });
+        assertNoMoreThan("newTypeSpecBuilder", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return AutoValueUtil.newTypeSpecBuilder(context, "AutoValue_Test",
+                        "$AutoValue_Test", true);
+            }
+        }), "building the same TypeSpec from a cached model", byHand + cacheHit());
+    }
+
+    @Test
+    public void newFinalClassConstructorCall() throws Exception {
+        final TestContext context = new TestContext(small);
+        final Object[] names = { "a", "b", "c", "d", "e", "f", "g", "h" };
+        long format = bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return CodeBlock.of("new $T($N, $N, $N, $N, $N, $N, $N, $N);\n",
+                        AutoValueUtil.getFinalClassClassName(context), names[0], names[1],
+                        names[2], names[3], names[4], names[5], names[6], names[7]);
+            }
+        });
+        assertNoMoreThan("newFinalClassConstructorCall", bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return AutoValueUtil.newFinalClassConstructorCall(context, names);
+            }
+        }), "a format with a placeholder per property", format);
+    }
+
+    @Test
+    public void signatureLookupsDontGrowWithMethods() throws Exception {
+        final TypeName string = ClassName.get(String.class);
+        long smallStatic = bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.getStaticMethod(small, string, TypeName.INT);
+            }
+        });
+        long largeStatic = bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.getStaticMethod(large, string, TypeName.INT);
+            }
+        });
+        assertNoMoreThan("getStaticMethod on a large class", largeStatic, "a small class",
+                smallStatic);
+
+        long smallAbstract = bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.getAbstractMethod(elements, small, string, TypeName.VOID);
+            }
+        });
+        long largeAbstract = bytesPerCall(new Callable<Object>() {
+            @Override public Object call() {
+                return ElementUtil.getAbstractMethod(elements, large, string, TypeName.VOID);
+            }
+        });
+        assertNoMoreThan("getAbstractMethod on a large class", largeAbstract, "a small class",
+                smallAbstract);
+    }
+}
@@ -0,0 +1,54 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.testing.compile.CompilationRule;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import javax.lang.model.element.TypeElement;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+public class AnnotationIndexTest {
+
+    @Rule public CompilationRule compilationRule = new CompilationRule();
+
+    @SuppressWarnings("unused")
+    private static abstract class AnnotationTestClass {
+        public abstract int a();
+        @Annotation1 public abstract int b();
+        @Annotation1 @Annotation2 public abstract int c();
+    }
+
+    @Retention(RUNTIME)
+    @Target(METHOD)
+    private @interface Annotation1 { }
+
+    @Retention(RUNTIME)
+    @Target(METHOD)
+    private @interface Annotation2 { }
+
+    @Test
+    public void index() {
+        TypeElement element = compilationRule.getElements()
+                .getTypeElement(AnnotationTestClass.class.getCanonicalName());
+        TestContext context = new TestContext(element);
+
+        AnnotationIndex index = AnnotationIndex.get(context);
+        assertThat(AnnotationIndex.get(context)).isSameAs(index);
+
+        assertThat(index.propertiesWithAnnotation("Annotation1")).containsExactly("b", "c");
+        assertThat(index.propertiesWithAnnotation(Annotation2.class.getCanonicalName()))
+                .containsExactly("c");
+        assertThat(index.propertiesWithAnnotation("Annotation3")).isEmpty();
+
+        assertThat(index.hasAnnotation("a", "Annotation1")).isFalse();
+        assertThat(index.hasAnnotation("b", "Annotation1")).isTrue();
+        assertThat(index.hasAnnotation("b", "Annotation2")).isFalse();
+
+        assertThat(index.annotations("a")).isEmpty();
+        assertThat(index.annotations("c")).containsExactly("Annotation1", "Annotation2");
+    }
+}
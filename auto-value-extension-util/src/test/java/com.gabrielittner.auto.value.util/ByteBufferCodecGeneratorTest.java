@@ -0,0 +1,86 @@
+package com.gabrielittner.auto.value.util;
+
+import com.gabrielittner.auto.value.util.extensions.CodecAutoValueExtension;
+import com.google.testing.compile.JavaFileObjects;
+import java.util.Collections;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+
+import static com.google.auto.value.processor.ExtensionTestHelper.newProcessor;
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+
+public class ByteBufferCodecGeneratorTest {
+
+    @Test public void byteBufferCodec() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "@AutoValue public abstract class Test {\n"
+                + "  public abstract int a();\n"
+                + "  public abstract String b();\n"
+                + "  public abstract boolean c();\n"
+                + "  public abstract double d();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expected = JavaFileObjects.forSourceString("test/TestCodec", ""
+                + "package test;\n"
+                + "import java.lang.String;\n"
+                + "import java.nio.ByteBuffer;\n"
+                + "final class TestCodec {\n"
+                + "  static final int FIXED_SIZE = 13;\n"
+                + "  private TestCodec() {\n"
+                + "  }\n"
+                + "  static int sizeOf(Test value) {\n"
+                + "    return FIXED_SIZE\n"
+                + "        + stringSize(value.b());\n"
+                + "  }\n"
+                + "  static void write(Test value, ByteBuffer buffer) {\n"
+                + "    buffer.putInt(value.a());\n"
+                + "    buffer.put(value.c() ? (byte) 1 : (byte) 0);\n"
+                + "    buffer.putDouble(value.d());\n"
+                + "    writeString(buffer, value.b());\n"
+                + "  }\n"
+                + "  static Test read(ByteBuffer buffer) {\n"
+                + "    int a = buffer.getInt();\n"
+                + "    boolean c = buffer.get() != 0;\n"
+                + "    double d = buffer.getDouble();\n"
+                + "    String b = readString(buffer);\n"
+                + "    return new AutoValue_Test(a, b, c, d);\n"
+                + "  }\n"
+                + "  private static int stringSize(String value) {\n"
+                + "    return value != null ? 4 + 2 * value.length() : 4;\n"
+                + "  }\n"
+                + "  private static void writeString(ByteBuffer buffer, String value) {\n"
+                + "    if (value == null) {\n"
+                + "      buffer.putInt(-1);\n"
+                + "      return;\n"
+                + "    }\n"
+                + "    int length = value.length();\n"
+                + "    buffer.putInt(length);\n"
+                + "    for (int i = 0; i < length; i++) {\n"
+                + "      buffer.putChar(value.charAt(i));\n"
+                + "    }\n"
+                + "  }\n"
+                + "  private static String readString(ByteBuffer buffer) {\n"
+                + "    int length = buffer.getInt();\n"
+                + "    if (length < 0) {\n"
+                + "      return null;\n"
+                + "    }\n"
+                + "    char[] chars = new char[length];\n"
+                + "    for (int i = 0; i < length; i++) {\n"
+                + "      chars[i] = buffer.getChar();\n"
+                + "    }\n"
+                + "    return new String(chars);\n"
+                + "  }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Collections.singletonList(source))
+                .processedWith(newProcessor(new CodecAutoValueExtension()))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expected);
+    }
+}
@@ -1,16 +1,30 @@
 package com.gabrielittner.auto.value.util;
 
+import com.google.common.cache.CacheStats;
 import com.google.testing.compile.CompilationRule;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.WildcardTypeName;
 import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -19,16 +33,20 @@ import static com.google.common.truth.Truth.assertThat;
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static org.junit.Assert.fail;
 
 public class ElementUtilTest {
 
     @Rule public CompilationRule compilationRule = new CompilationRule();
 
     private Elements elements;
+    private Types types;
 
     @Before
     public void setUp() {
         this.elements = compilationRule.getElements();
+        this.types = compilationRule.getTypes();
+        ElementUtil.track(elements);
     }
 
 
@@ -43,6 +61,9 @@ public class ElementUtilTest {
         static String e(int e) {
             return null;
         }
+        static String f(int f, String f2) {
+            return null;
+        }
     }
 
     @Test
@@ -75,6 +96,214 @@ public class ElementUtilTest {
         assertThat(ElementUtil.hasStaticMethod(element, TypeName.INT, TypeName.get(String.class))).isTrue();
     }
 
+    @Test
+    public void batchMethodTests() {
+        TypeElement element = elements.getTypeElement(MethodTestClass.class.getCanonicalName());
+        TypeName string = TypeName.get(String.class);
+
+        MethodSignature c = MethodSignature.of(Modifier.STATIC, null, TypeName.INT);
+        MethodSignature d = MethodSignature.of(Modifier.ABSTRACT, string, TypeName.INT);
+        MethodSignature f = MethodSignature.withParameters(Modifier.STATIC,
+                Arrays.asList(TypeName.INT, string), string);
+        MethodSignature missing = MethodSignature.withParameters(Modifier.STATIC,
+                Arrays.asList(string, TypeName.INT), string);
+
+        Map<MethodSignature, ExecutableElement> methods =
+                ElementUtil.getMethods(elements, element, Arrays.asList(c, d, f, missing));
+        assertThat(methods.keySet()).containsExactly(c, d, f);
+        assertThat(methods.get(c).getSimpleName().toString()).isEqualTo("c");
+        assertThat(methods.get(d).getSimpleName().toString()).isEqualTo("d");
+        assertThat(methods.get(f).getSimpleName().toString()).isEqualTo("f");
+    }
+
+    @Test
+    public void typeMirrorMethodTests() {
+        TypeElement element = elements.getTypeElement(MethodTestClass.class.getCanonicalName());
+        TypeMirror voidType = ElementUtil.getTypeMirror(elements, types, TypeName.VOID);
+        TypeMirror intType = ElementUtil.getTypeMirror(elements, types, TypeName.INT);
+        TypeMirror stringType = ElementUtil.getTypeMirror(elements, types,
+                TypeName.get(String.class));
+
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, null, voidType)).isFalse();
+        assertThat(ElementUtil.hasStaticMethod(types, element, null, voidType)).isFalse();
+
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, stringType, voidType)).isTrue();
+        assertThat(ElementUtil.hasStaticMethod(types, element, stringType, voidType)).isFalse();
+
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, null, intType)).isFalse();
+        assertThat(ElementUtil.hasStaticMethod(types, element, null, intType)).isTrue();
+
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, stringType, intType)).isTrue();
+        assertThat(ElementUtil.hasStaticMethod(types, element, stringType, intType)).isFalse();
+
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, intType, stringType)).isFalse();
+        assertThat(ElementUtil.hasStaticMethod(types, element, intType, stringType)).isTrue();
+    }
+
+    @SuppressWarnings("unused")
+    private static abstract class MatchTestClass {
+        abstract List<String> g(ArrayList<Integer> g);
+    }
+
+    @Test
+    public void typeMatch() {
+        TypeElement element = elements.getTypeElement(MatchTestClass.class.getCanonicalName());
+        TypeMirror rawList = types.erasure(
+                elements.getTypeElement(List.class.getCanonicalName()).asType());
+        TypeMirror rawArrayList = types.erasure(
+                elements.getTypeElement(ArrayList.class.getCanonicalName()).asType());
+        TypeMirror listOfStrings = ElementUtil.getTypeMirror(elements, types,
+                ParameterizedTypeName.get(List.class, String.class));
+
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, rawArrayList,
+                rawList, TypeMatch.EXACT)).isFalse();
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, rawArrayList,
+                rawList, TypeMatch.ERASURE)).isTrue();
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, rawList,
+                rawList, TypeMatch.ERASURE)).isFalse();
+        // an ArrayList<Integer> parameter is assignable to List
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, rawList,
+                listOfStrings, TypeMatch.ASSIGNABLE)).isTrue();
+        assertThat(ElementUtil.hasAbstractMethod(elements, types, element, rawList,
+                rawArrayList, TypeMatch.ASSIGNABLE)).isFalse();
+
+        TypeMirror intType = ElementUtil.getTypeMirror(elements, types, TypeName.INT);
+        TypeMirror longType = ElementUtil.getTypeMirror(elements, types, TypeName.LONG);
+        assertThat(ElementUtil.matches(types, intType, longType, TypeMatch.ERASURE)).isFalse();
+        assertThat(ElementUtil.matches(types, intType, longType, TypeMatch.ASSIGNABLE)).isTrue();
+    }
+
+    @Test
+    public void typeMatchCaching() {
+        TypeElement element = elements.getTypeElement(MatchTestClass.class.getCanonicalName());
+        TypeMirror rawList = types.erasure(
+                elements.getTypeElement(List.class.getCanonicalName()).asType());
+        ExecutableElement g = ElementUtil.getLocalMethods(element).get(0);
+
+        ElementUtil.invalidateTypeRelations();
+        CacheStats before = ElementUtil.getTypeRelationCacheStats(types);
+        for (int i = 0; i < 3; i++) {
+            assertThat(ElementUtil.matches(types, g.getReturnType(), rawList,
+                    TypeMatch.ASSIGNABLE)).isTrue();
+        }
+        CacheStats stats = ElementUtil.getTypeRelationCacheStats(types).minus(before);
+        assertThat(stats.missCount()).isEqualTo(1);
+        assertThat(stats.hitCount()).isEqualTo(2);
+
+        // a new round starts with an empty cache
+        ElementUtil.invalidateTypeRelations();
+        ElementUtil.matches(types, g.getReturnType(), rawList, TypeMatch.ASSIGNABLE);
+        stats = ElementUtil.getTypeRelationCacheStats(types).minus(before);
+        assertThat(stats.missCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void typeRelationsArePerCompilation() {
+        TypeElement element = elements.getTypeElement(MatchTestClass.class.getCanonicalName());
+        TypeMirror rawList = types.erasure(
+                elements.getTypeElement(List.class.getCanonicalName()).asType());
+        ExecutableElement g = ElementUtil.getLocalMethods(element).get(0);
+        Types otherTypes = (Types) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Types.class }, new InvocationHandler() {
+                    @Override public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        return method.invoke(types, args);
+                    }
+                });
+
+        ElementUtil.matches(types, g.getReturnType(), rawList, TypeMatch.ASSIGNABLE);
+        CacheStats before = ElementUtil.getTypeRelationCacheStats(otherTypes);
+        ElementUtil.matches(otherTypes, g.getReturnType(), rawList, TypeMatch.ASSIGNABLE);
+
+        CacheStats stats = ElementUtil.getTypeRelationCacheStats(otherTypes).minus(before);
+        assertThat(stats.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void typeMirror() {
+        TypeName listOfStrings = ParameterizedTypeName.get(List.class, String.class);
+        TypeMirror mirror = ElementUtil.getTypeMirror(elements, types, listOfStrings);
+        assertThat(TypeName.get(mirror)).isEqualTo(listOfStrings);
+
+        TypeName wildcard = ParameterizedTypeName.get(ClassName.get(List.class),
+                WildcardTypeName.subtypeOf(Number.class));
+        assertThat(TypeName.get(ElementUtil.getTypeMirror(elements, types, wildcard)))
+                .isEqualTo(wildcard);
+
+        TypeName array = ArrayTypeName.of(TypeName.LONG);
+        assertThat(TypeName.get(ElementUtil.getTypeMirror(elements, types, array)))
+                .isEqualTo(array);
+    }
+
+    @Test
+    public void localAndInheritedMethodsAreCached() {
+        TypeElement element = elements.getTypeElement(MethodTestClass.class.getCanonicalName());
+
+        Set<ExecutableElement> first = ElementUtil.getLocalAndInheritedMethods(elements, element);
+        long hits = ElementUtil.getLocalAndInheritedMethodsCacheStats(elements).hitCount();
+        Set<ExecutableElement> second = ElementUtil.getLocalAndInheritedMethods(elements, element);
+
+        assertThat(second).isSameAs(first);
+        assertThat(ElementUtil.getLocalAndInheritedMethodsCacheStats(elements).hitCount())
+                .isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void elementCachesArePerCompilation() {
+        TypeElement element = elements.getTypeElement(MethodTestClass.class.getCanonicalName());
+        Elements otherElements = (Elements) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Elements.class }, new InvocationHandler() {
+                    @Override public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        return method.invoke(elements, args);
+                    }
+                });
+
+        Set<ExecutableElement> first = ElementUtil.getLocalAndInheritedMethods(elements, element);
+        Set<ExecutableElement> other =
+                ElementUtil.getLocalAndInheritedMethods(otherElements, element);
+
+        assertThat(other).isNotSameAs(first);
+        assertThat(ElementUtil.getLocalAndInheritedMethodsCacheStats(otherElements).missCount())
+                .isEqualTo(1);
+        // lookups without Elements use the compilation seen last
+        MethodIndex index = ElementUtil.getLocalMethodIndex(element);
+        assertThat(ElementUtil.getMethodIndexCacheStats(otherElements).missCount()).isEqualTo(1);
+        ElementUtil.track(elements);
+        assertThat(ElementUtil.getLocalMethodIndex(element)).isNotSameAs(index);
+    }
+
+    @Test
+    public void elementCachesAreDroppedPerRound() {
+        TypeElement element = elements.getTypeElement(MethodTestClass.class.getCanonicalName());
+
+        Set<ExecutableElement> first = ElementUtil.getLocalAndInheritedMethods(elements, element);
+        MethodIndex index = ElementUtil.getLocalMethodIndex(element);
+        ElementUtil.invalidateElementCaches(elements);
+
+        assertThat(ElementUtil.getLocalAndInheritedMethods(elements, element)).isNotSameAs(first);
+        assertThat(ElementUtil.getLocalMethodIndex(element)).isNotSameAs(index);
+    }
+
+    @Test
+    public void methodIndex() {
+        TypeElement element = elements.getTypeElement(MethodTestClass.class.getCanonicalName());
+
+        MethodIndex index = ElementUtil.getLocalMethodIndex(element);
+        assertThat(ElementUtil.getLocalMethodIndex(element)).isSameAs(index);
+
+        ExecutableElement e = index.get(MethodSignature.of(Modifier.STATIC, TypeName.INT,
+                TypeName.get(String.class)));
+        assertThat(e.getSimpleName().toString()).isEqualTo("e");
+        assertThat(index.contains(MethodSignature.of(Modifier.ABSTRACT, TypeName.INT,
+                TypeName.get(String.class)))).isFalse();
+
+        MethodIndex inherited = ElementUtil.getLocalAndInheritedMethodIndex(elements, element);
+        ExecutableElement d = inherited.get(Modifier.ABSTRACT, TypeName.get(String.class),
+                TypeName.INT);
+        assertThat(d.getSimpleName().toString()).isEqualTo("d");
+    }
+
     @SuppressWarnings("unused")
     private static abstract class MethodModifierTestClass {
         void a() { }
@@ -188,12 +417,77 @@ public class ElementUtilTest {
         assertThat(ElementUtil.methodTakes(d, TypeName.get(String.class))).isFalse();
     }
 
+    // counts the types looked up through it
+    private Elements countingElements(final List<String> lookups) {
+        return (Elements) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Elements.class }, new InvocationHandler() {
+                    @Override public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        if (method.getName().equals("getTypeElement")) {
+                            lookups.add(args[0].toString());
+                        }
+                        return method.invoke(elements, args);
+                    }
+                });
+    }
+
     @Test
     public void typeExists() {
+        List<String> lookups = new ArrayList<>();
+        Elements counting = countingElements(lookups);
+        ElementUtil.track(counting);
+
         ClassName testClassName = ClassName.get(AnnotationTestClass.class);
-        assertThat(ElementUtil.typeExists(elements, testClassName)).isTrue();
+        assertThat(ElementUtil.typeExists(counting, testClassName)).isTrue();
         ClassName testClass2Name = testClassName.peerClass("TestClass2");
-        assertThat(ElementUtil.typeExists(elements, testClass2Name)).isFalse();
+        assertThat(ElementUtil.typeExists(counting, testClass2Name)).isFalse();
+        assertThat(lookups).hasSize(2);
+
+        // cached results
+        assertThat(ElementUtil.typeExists(counting, testClassName)).isTrue();
+        assertThat(ElementUtil.typeExists(counting, testClass2Name)).isFalse();
+        assertThat(lookups).hasSize(2);
+
+        // a new round looks up missing types again
+        ElementUtil.invalidateElementCaches(counting);
+        assertThat(ElementUtil.typeExists(counting, testClassName)).isTrue();
+        assertThat(ElementUtil.typeExists(counting, testClass2Name)).isFalse();
+        assertThat(lookups).containsExactly(testClassName.toString(),
+                testClass2Name.toString(), testClass2Name.toString()).inOrder();
+    }
+
+    @Test
+    public void missingTypesArentCachedWithoutRoundTracker() {
+        List<String> lookups = new ArrayList<>();
+        Elements counting = countingElements(lookups);
+
+        ClassName className = ClassName.get(AnnotationTestClass.class).peerClass("TestClass2");
+        assertThat(ElementUtil.typeExists(counting, className)).isFalse();
+        assertThat(ElementUtil.typeExists(counting, className)).isFalse();
+
+        assertThat(lookups).hasSize(2);
+    }
+
+    @Test
+    public void typeExistsAfterBeingGenerated() {
+        // returns null on the first lookup, like a type that gets generated in the first round
+        Elements generating = (Elements) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Elements.class }, new InvocationHandler() {
+                    private boolean generated;
+
+                    @Override public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        if (method.getName().equals("getTypeElement") && !generated) {
+                            generated = true;
+                            return null;
+                        }
+                        return method.invoke(elements, args);
+                    }
+                });
+
+        ClassName className = ClassName.get(AnnotationTestClass.class);
+        assertThat(ElementUtil.typeExists(generating, className)).isFalse();
+        assertThat(ElementUtil.typeExists(generating, className)).isTrue();
     }
 
     @SuppressWarnings("unused")
@@ -201,6 +495,7 @@ public class ElementUtilTest {
         public abstract int a();
         @Annotation1 public abstract int b();
         @Annotation1 @Annotation2("test") public abstract int c();
+        @Annotation3(value = "d", names = { "d1", "d2" }) public abstract int d();
     }
 
     @Retention(RUNTIME)
@@ -214,6 +509,17 @@ public class ElementUtilTest {
         String value();
     }
 
+    @Retention(RUNTIME)
+    @Target({METHOD, FIELD})
+    @SuppressWarnings("unused")
+    private @interface Annotation3 {
+        String value();
+        int count() default 3;
+        Class<?> type() default Integer.class;
+        String[] names() default {};
+        RetentionPolicy policy() default RUNTIME;
+    }
+
     @Test
     public void annotationWithName() {
         TypeElement element = elements.getTypeElement(AnnotationTestClass.class.getCanonicalName());
@@ -265,6 +571,30 @@ public class ElementUtilTest {
         }
     }
 
+    @Test
+    public void annotationValuesTest() {
+        TypeElement element = elements.getTypeElement(AnnotationTestClass.class.getCanonicalName());
+        List<? extends Element> elements = element.getEnclosedElements();
+
+        Element a = getElementWithName(elements, "a");
+        assertThat(ElementUtil.getAnnotationValues(a, Annotation3.class)).isNull();
+
+        Element d = getElementWithName(elements, "d");
+        AnnotationValues values = ElementUtil.getAnnotationValues(d, Annotation3.class);
+        assertThat(ElementUtil.getAnnotationValues(d, Annotation3.class)).isSameAs(values);
+        assertThat(values.getString("value")).isEqualTo("d");
+        assertThat(values.getInt("count")).isEqualTo(3);
+        assertThat(TypeName.get(values.getType("type"))).isEqualTo(TypeName.get(Integer.class));
+        assertThat(values.getList("names")).containsExactly("d1", "d2").inOrder();
+        assertThat(values.get("policy")).isEqualTo("RUNTIME");
+
+        try {
+            values.get("value2");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
     private Element getElementWithName(List<? extends Element> elements, String name) {
         for (Element element : elements) {
             if (element.getSimpleName().toString().equals(name)) {
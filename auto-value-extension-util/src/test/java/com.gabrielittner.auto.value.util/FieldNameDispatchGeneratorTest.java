@@ -0,0 +1,112 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.testing.compile.CompilationRule;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.Arrays;
+import javax.lang.model.element.TypeElement;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+public class FieldNameDispatchGeneratorTest {
+
+    @Rule public CompilationRule compilationRule = new CompilationRule();
+
+    @SuppressWarnings("unused")
+    private static abstract class RenameTestClass {
+        public abstract int id();
+        @SerializedName("full_name") public abstract String name();
+    }
+
+    @Retention(RUNTIME)
+    @Target(METHOD)
+    private @interface SerializedName {
+        String value();
+    }
+
+    @Test
+    public void fieldNames() {
+        TypeElement element = compilationRule.getElements()
+                .getTypeElement(RenameTestClass.class.getCanonicalName());
+
+        assertThat(FieldNameDispatchGenerator.fieldNames(new TestContext(element),
+                SerializedName.class, "value")).containsExactly("id", "full_name").inOrder();
+    }
+
+    @Test
+    public void generate() {
+        String method = FieldNameDispatchGenerator.generate("fieldIndex",
+                Arrays.asList("id", "name", "to", "tag", "top", "it's")).toString();
+
+        assertThat(method).isEqualTo(""
+                + "static int fieldIndex(java.lang.CharSequence key) {\n"
+                + "  switch (key.length()) {\n"
+                + "    case 2:\n"
+                + "      switch (key.charAt(0)) {\n"
+                + "        case 'i':\n"
+                + "          return \"id\".contentEquals(key) ? 0 : -1;\n"
+                + "        case 't':\n"
+                + "          return \"to\".contentEquals(key) ? 2 : -1;\n"
+                + "      }\n"
+                + "      break;\n"
+                + "    case 3:\n"
+                + "      switch (key.charAt(1)) {\n"
+                + "        case 'a':\n"
+                + "          return \"tag\".contentEquals(key) ? 3 : -1;\n"
+                + "        case 'o':\n"
+                + "          return \"top\".contentEquals(key) ? 4 : -1;\n"
+                + "      }\n"
+                + "      break;\n"
+                + "    case 4:\n"
+                + "      switch (key.charAt(0)) {\n"
+                + "        case 'i':\n"
+                + "          return \"it's\".contentEquals(key) ? 5 : -1;\n"
+                + "        case 'n':\n"
+                + "          return \"name\".contentEquals(key) ? 1 : -1;\n"
+                + "      }\n"
+                + "      break;\n"
+                + "  }\n"
+                + "  return -1;\n"
+                + "}\n");
+    }
+
+    @Test
+    public void generateNestedSplit() {
+        String method = FieldNameDispatchGenerator.generate("fieldIndex",
+                Arrays.asList("ab", "ac", "bb", "\u00e9\\", "a\nb")).toString();
+
+        assertThat(method).isEqualTo(""
+                + "static int fieldIndex(java.lang.CharSequence key) {\n"
+                + "  switch (key.length()) {\n"
+                + "    case 2:\n"
+                + "      switch (key.charAt(0)) {\n"
+                + "        case 'a':\n"
+                + "          switch (key.charAt(1)) {\n"
+                + "            case 'b':\n"
+                + "              return \"ab\".contentEquals(key) ? 0 : -1;\n"
+                + "            case 'c':\n"
+                + "              return \"ac\".contentEquals(key) ? 1 : -1;\n"
+                + "          }\n"
+                + "          break;\n"
+                + "        case 'b':\n"
+                + "          return \"bb\".contentEquals(key) ? 2 : -1;\n"
+                + "        case '\\u00e9':\n"
+                + "          return \"\\u00e9\\\\\".contentEquals(key) ? 3 : -1;\n"
+                + "      }\n"
+                + "      break;\n"
+                + "    case 3:\n"
+                + "      return \"a\\nb\".contentEquals(key) ? 4 : -1;\n"
+                + "  }\n"
+                + "  return -1;\n"
+                + "}\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateNames() {
+        FieldNameDispatchGenerator.generate("fieldIndex", Arrays.asList("a", "b", "a"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.gabrielittner.auto.value.util;
+
+import com.gabrielittner.auto.value.util.extensions.SimpleAutoValueExtension;
+import com.gabrielittner.auto.value.util.extensions.SimpleFinalAutoValueExtension;
+import com.google.common.cache.CacheStats;
+import com.google.testing.compile.CompilationRule;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.lang.model.element.TypeElement;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class GeneratedSourceCacheTest {
+
+    @Rule public CompilationRule compilationRule = new CompilationRule();
+
+    @SuppressWarnings("unused")
+    private static abstract class CacheTestClass {
+        public abstract int a();
+        @Deprecated public abstract String b();
+    }
+
+    @SuppressWarnings("unused")
+    private static abstract class OtherCacheTestClass {
+        public abstract int a();
+        public abstract String b();
+    }
+
+    private TestContext context(Class<?> cls) {
+        TypeElement element = compilationRule.getElements()
+                .getTypeElement(cls.getCanonicalName());
+        return new TestContext(element);
+    }
+
+    @Test
+    public void fingerprint() {
+        SimpleAutoValueExtension extension = new SimpleAutoValueExtension();
+        TestContext context = context(CacheTestClass.class);
+
+        assertThat(GeneratedSourceCache.fingerprint(extension, context, "A", "B", true))
+                .isEqualTo(GeneratedSourceCache.fingerprint(extension,
+                        context(CacheTestClass.class), "A", "B", true));
+        assertThat(GeneratedSourceCache.fingerprint(extension, context, "A", "B", true))
+                .isNotEqualTo(GeneratedSourceCache.fingerprint(extension, context, "A", "B",
+                        false));
+        assertThat(GeneratedSourceCache.fingerprint(extension, context, "A", "B", true))
+                .isNotEqualTo(GeneratedSourceCache.fingerprint(extension, context, "A", "C",
+                        true));
+        assertThat(GeneratedSourceCache.fingerprint(extension, context, "A", "B", true))
+                .isNotEqualTo(GeneratedSourceCache.fingerprint(
+                        new SimpleFinalAutoValueExtension(), context, "A", "B", true));
+        // differs only in the annotation on b()
+        assertThat(GeneratedSourceCache.fingerprint(extension, context, "A", "B", true))
+                .isNotEqualTo(GeneratedSourceCache.fingerprint(extension,
+                        context(OtherCacheTestClass.class), "A", "B", true));
+    }
+
+    @Test
+    public void get() {
+        SimpleAutoValueExtension extension = new SimpleAutoValueExtension();
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<String> generator = new Callable<String>() {
+            @Override public String call() {
+                return "source" + calls.incrementAndGet();
+            }
+        };
+        CacheStats before = GeneratedSourceCache.stats();
+
+        String source = GeneratedSourceCache.get(extension, context(CacheTestClass.class),
+                "$AutoValue_CacheTestClass", "$$AutoValue_CacheTestClass", false, generator);
+        assertThat(GeneratedSourceCache.get(extension, context(CacheTestClass.class),
+                "$AutoValue_CacheTestClass", "$$AutoValue_CacheTestClass", false, generator))
+                .isSameAs(source);
+        assertThat(calls.get()).isEqualTo(1);
+
+        CacheStats stats = GeneratedSourceCache.stats().minus(before);
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(1);
+        assertThat(GeneratedSourceCache.size()).isAtLeast(1L);
+    }
+}
@@ -0,0 +1,106 @@
+package com.gabrielittner.auto.value.util;
+
+import com.gabrielittner.auto.value.util.extensions.CallingConstructorAutoValueExtension;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.google.auto.value.processor.ExtensionTestHelper.newProcessor;
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class InstrumentedExtensionTest {
+
+    private static final JavaFileObject SOURCE = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "  public abstract int a();\n"
+            + "}\n"
+    );
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void writesReport() throws Exception {
+        File report = new File(temporaryFolder.getRoot(), "profile/report.json");
+
+        assertAbout(javaSources()).that(Collections.singletonList(SOURCE))
+                .withCompilerOptions("-A" + ExtensionProfiler.OPTION_REPORT + "=" + report)
+                .processedWith(new RoundTracker(), newProcessor(
+                        new InstrumentedExtension(new CallingConstructorAutoValueExtension())))
+                .compilesWithoutError();
+
+        assertReport(report);
+    }
+
+    @Test public void writesReportWhenRoundTrackerIsInitializedLast() throws Exception {
+        File report = new File(temporaryFolder.getRoot(), "report.json");
+
+        // javac initializes processors in order, so extensions run before RoundTracker's init
+        assertAbout(javaSources()).that(Collections.singletonList(SOURCE))
+                .withCompilerOptions("-A" + ExtensionProfiler.OPTION_REPORT + "=" + report)
+                .processedWith(newProcessor(
+                        new InstrumentedExtension(new CallingConstructorAutoValueExtension())),
+                        new RoundTracker())
+                .compilesWithoutError();
+
+        assertReport(report);
+    }
+
+    private static void assertReport(File report) throws IOException {
+        String json = Files.toString(report, UTF_8);
+        assertThat(json).contains("\"name\": \""
+                + CallingConstructorAutoValueExtension.class.getName() + "\"");
+        assertThat(json).contains("\"class\": \"test.Test\"");
+        assertThat(json).contains("\"generateClass\": {\"calls\": 1");
+    }
+
+    @Test public void disabledWithoutOption() {
+        EnvironmentProcessor processor = new EnvironmentProcessor();
+
+        assertAbout(javaSources()).that(Collections.singletonList(SOURCE))
+                .processedWith(processor, new RoundTracker(), newProcessor(
+                        new InstrumentedExtension(new CallingConstructorAutoValueExtension())))
+                .compilesWithoutError();
+
+        assertThat(ExtensionProfiler.isEnabled(processor.environment)).isFalse();
+    }
+
+    // keeps the processing environment of the compilation it runs in
+    private static final class EnvironmentProcessor extends AbstractProcessor {
+        ProcessingEnvironment environment;
+
+        @Override public synchronized void init(ProcessingEnvironment processingEnv) {
+            super.init(processingEnv);
+            environment = processingEnv;
+        }
+
+        @Override public Set<String> getSupportedAnnotationTypes() {
+            return ImmutableSet.of("*");
+        }
+
+        @Override public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override public boolean process(Set<? extends TypeElement> annotations,
+                RoundEnvironment roundEnv) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.gabrielittner.auto.value.util;
+
+import com.gabrielittner.auto.value.util.extensions.InterningAutoValueExtension;
+import com.google.testing.compile.JavaFileObjects;
+import java.util.Collections;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+
+import static com.google.auto.value.processor.ExtensionTestHelper.newProcessor;
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+
+public class InternerGeneratorTest {
+
+    @Test public void weakInterner() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "@AutoValue public abstract class Test {\n"
+                + "  public abstract int a();\n"
+                + "  public abstract String b();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expected = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "import java.lang.String;\n"
+                + "import java.lang.ref.WeakReference;\n"
+                + "import java.util.Map;\n"
+                + "import java.util.WeakHashMap;\n"
+                + "import java.util.concurrent.atomic.AtomicLong;\n"
+                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "  private static final Map<Test, WeakReference<Test>> INTERNED ="
+                + " new WeakHashMap<Test, WeakReference<Test>>();\n"
+                + "  private static final AtomicLong INTERN_HITS = new AtomicLong();\n"
+                + "  private static final AtomicLong INTERN_MISSES = new AtomicLong();\n"
+                + "  AutoValue_Test(int a, String b) {\n"
+                + "    super(a, b);\n"
+                + "  }\n"
+                + "  static Test intern(Test value) {\n"
+                + "    synchronized (INTERNED) {\n"
+                + "      WeakReference<Test> reference = INTERNED.get(value);\n"
+                + "      Test interned = reference != null ? reference.get() : null;\n"
+                + "      if (interned != null) {\n"
+                + "        INTERN_HITS.incrementAndGet();\n"
+                + "        return interned;\n"
+                + "      }\n"
+                + "      INTERN_MISSES.incrementAndGet();\n"
+                + "      INTERNED.put(value, new WeakReference<Test>(value));\n"
+                + "      return value;\n"
+                + "    }\n"
+                + "  }\n"
+                + "  static int internedCount() {\n"
+                + "    synchronized (INTERNED) {\n"
+                + "      return INTERNED.size();\n"
+                + "    }\n"
+                + "  }\n"
+                + "  static double internHitRate() {\n"
+                + "    long hits = INTERN_HITS.get();\n"
+                + "    long requests = hits + INTERN_MISSES.get();\n"
+                + "    return requests == 0 ? 0.0 : (double) hits / requests;\n"
+                + "  }\n"
+                + "  static Test create(int a, String b) {\n"
+                + "    Test value = new AutoValue_Test(a, b);\n"
+                + "    return intern(value);\n"
+                + "  }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Collections.singletonList(source))
+                .processedWith(newProcessor(new InterningAutoValueExtension()))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expected);
+    }
+
+    @Test public void boundedInterner() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "@AutoValue public abstract class Test {\n"
+                + "  public abstract int a();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expected = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "import java.lang.Override;\n"
+                + "import java.util.LinkedHashMap;\n"
+                + "import java.util.Map;\n"
+                + "import java.util.concurrent.atomic.AtomicLong;\n"
+                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "  private static final Map<Test, Test> INTERNED ="
+                + " new LinkedHashMap<Test, Test>(16, 0.75f, true) {\n"
+                + "    @Override\n"
+                + "    protected boolean removeEldestEntry(Map.Entry<Test, Test> eldest) {\n"
+                + "      return size() > 100;\n"
+                + "    }\n"
+                + "  };\n"
+                + "  private static final AtomicLong INTERN_HITS = new AtomicLong();\n"
+                + "  private static final AtomicLong INTERN_MISSES = new AtomicLong();\n"
+                + "  AutoValue_Test(int a) {\n"
+                + "    super(a);\n"
+                + "  }\n"
+                + "  static Test intern(Test value) {\n"
+                + "    synchronized (INTERNED) {\n"
+                + "      Test interned = INTERNED.get(value);\n"
+                + "      if (interned != null) {\n"
+                + "        INTERN_HITS.incrementAndGet();\n"
+                + "        return interned;\n"
+                + "      }\n"
+                + "      INTERN_MISSES.incrementAndGet();\n"
+                + "      INTERNED.put(value, value);\n"
+                + "      return value;\n"
+                + "    }\n"
+                + "  }\n"
+                + "  static int internedCount() {\n"
+                + "    synchronized (INTERNED) {\n"
+                + "      return INTERNED.size();\n"
+                + "    }\n"
+                + "  }\n"
+                + "  static double internHitRate() {\n"
+                + "    long hits = INTERN_HITS.get();\n"
+                + "    long requests = hits + INTERN_MISSES.get();\n"
+                + "    return requests == 0 ? 0.0 : (double) hits / requests;\n"
+                + "  }\n"
+                + "  static Test create(int a) {\n"
+                + "    Test value = new AutoValue_Test(a);\n"
+                + "    return intern(value);\n"
+                + "  }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Collections.singletonList(source))
+                .processedWith(newProcessor(new InterningAutoValueExtension(100)))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expected);
+    }
+
+    @Test public void boundedInternerForGenericClass() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "@AutoValue public abstract class Test<T> {\n"
+                + "  public abstract T value();\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Collections.singletonList(source))
+                .processedWith(newProcessor(new InterningAutoValueExtension(100)))
+                .compilesWithoutError();
+    }
+}
@@ -0,0 +1,86 @@
+package com.gabrielittner.auto.value.util;
+
+import com.gabrielittner.auto.value.util.extensions.LazyAutoValueExtension;
+import com.google.testing.compile.JavaFileObjects;
+import java.util.Arrays;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+
+import static com.google.auto.value.processor.ExtensionTestHelper.newProcessor;
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+
+public class LazyValueGeneratorTest {
+
+    @Test public void lazyVariant() {
+        JavaFileObject nullable = JavaFileObjects.forSourceString("test.Nullable", ""
+                + "package test;\n"
+                + "import java.lang.annotation.ElementType;\n"
+                + "import java.lang.annotation.Target;\n"
+                + "@Target({ElementType.METHOD, ElementType.PARAMETER})\n"
+                + "public @interface Nullable {}\n"
+        );
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "@AutoValue public abstract class Test {\n"
+                + "  public abstract int a();\n"
+                + "  @Nullable abstract String b();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expected = JavaFileObjects.forSourceString("test/LazyTest", ""
+                + "package test;\n"
+                + "import java.lang.Object;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "final class LazyTest extends Test {\n"
+                + "  private final String[] source$;\n"
+                + "  private volatile long decoded$0;\n"
+                + "  private volatile Test materialized$;\n"
+                + "  private int a;\n"
+                + "  private String b;\n"
+                + "  LazyTest(String[] source$) {\n"
+                + "    this.source$ = source$;\n"
+                + "  }\n"
+                + "  @Override public int a() {\n"
+                + "    if ((decoded$0 & 0x1L) == 0) {\n"
+                + "      a = Integer.parseInt(this.source$[0]);\n"
+                + "      decoded$0 |= 0x1L;\n"
+                + "    }\n"
+                + "    return a;\n"
+                + "  }\n"
+                + "  @Override public String b() {\n"
+                + "    if ((decoded$0 & 0x2L) == 0) {\n"
+                + "      b = (this.source$[1] == null ? null : this.source$[1]);\n"
+                + "      decoded$0 |= 0x2L;\n"
+                + "    }\n"
+                + "    return b;\n"
+                + "  }\n"
+                + "  Test materialize() {\n"
+                + "    Test materialized = materialized$;\n"
+                + "    if (materialized == null) {\n"
+                + "      materialized = new AutoValue_Test(a(), b());\n"
+                + "      materialized$ = materialized;\n"
+                + "    }\n"
+                + "    return materialized;\n"
+                + "  }\n"
+                + "  @Override public boolean equals(Object o) {\n"
+                + "    return materialize().equals(o);\n"
+                + "  }\n"
+                + "  @Override public int hashCode() {\n"
+                + "    return materialize().hashCode();\n"
+                + "  }\n"
+                + "  @Override public String toString() {\n"
+                + "    return materialize().toString();\n"
+                + "  }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Arrays.asList(nullable, source))
+                .processedWith(newProcessor(new LazyAutoValueExtension()))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expected);
+    }
+}
@@ -0,0 +1,139 @@
+package com.gabrielittner.auto.value.util;
+
+import com.gabrielittner.auto.value.util.extensions.MemoizingAutoValueExtension;
+import com.google.testing.compile.CompilationRule;
+import com.google.testing.compile.JavaFileObjects;
+import com.squareup.javapoet.TypeSpec;
+import java.util.Arrays;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.auto.value.processor.ExtensionTestHelper.newProcessor;
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+
+public class MemoizedMethodGeneratorTest {
+
+    @Rule public CompilationRule compilationRule = new CompilationRule();
+
+    @SuppressWarnings("unused")
+    private static abstract class MemoizeTestClass {
+        final String finalMethod() {
+            return "";
+        }
+        <T> T genericMethod() {
+            return null;
+        }
+    }
+
+    private ExecutableElement method(String name) {
+        TypeElement element = compilationRule.getElements()
+                .getTypeElement(MemoizeTestClass.class.getCanonicalName());
+        for (ExecutableElement method : ElementUtil.getLocalMethods(element)) {
+            if (method.getSimpleName().contentEquals(name)) {
+                return method;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    @Test public void memoizedMethods() {
+        JavaFileObject memoized = JavaFileObjects.forSourceString("test.Memoized", ""
+                + "package test;\n"
+                + "public @interface Memoized {}\n"
+        );
+        JavaFileObject nullable = JavaFileObjects.forSourceString("test.Nullable", ""
+                + "package test;\n"
+                + "public @interface Nullable {}\n"
+        );
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "@AutoValue public abstract class Test {\n"
+                + "  public abstract int a();\n"
+                + "  @Memoized public String b() {\n"
+                + "    return String.valueOf(a());\n"
+                + "  }\n"
+                + "  @Memoized @Nullable String c() {\n"
+                + "    return null;\n"
+                + "  }\n"
+                + "  @Memoized protected long d() {\n"
+                + "    return a();\n"
+                + "  }\n"
+                + "}\n"
+        );
+
+        JavaFileObject expected = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+                + "package test;\n"
+                + "import java.lang.NullPointerException;\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "final class AutoValue_Test extends $AutoValue_Test {\n"
+                + "  private transient volatile String b;\n"
+                + "  private transient String c;\n"
+                + "  private transient volatile boolean c$Memoized;\n"
+                + "  private transient long d;\n"
+                + "  private transient volatile boolean d$Memoized;\n"
+                + "  AutoValue_Test(int a) {\n"
+                + "    super(a);\n"
+                + "  }\n"
+                + "  @Override public String b() {\n"
+                + "    if (b == null) {\n"
+                + "      synchronized (this) {\n"
+                + "        if (b == null) {\n"
+                + "          b = super.b();\n"
+                + "          if (b == null) {\n"
+                + "            throw new NullPointerException(\"b() cannot return null\");\n"
+                + "          }\n"
+                + "        }\n"
+                + "      }\n"
+                + "    }\n"
+                + "    return b;\n"
+                + "  }\n"
+                + "  @Override String c() {\n"
+                + "    if (!c$Memoized) {\n"
+                + "      synchronized (this) {\n"
+                + "        if (!c$Memoized) {\n"
+                + "          c = super.c();\n"
+                + "          c$Memoized = true;\n"
+                + "        }\n"
+                + "      }\n"
+                + "    }\n"
+                + "    return c;\n"
+                + "  }\n"
+                + "  @Override protected long d() {\n"
+                + "    if (!d$Memoized) {\n"
+                + "      synchronized (this) {\n"
+                + "        if (!d$Memoized) {\n"
+                + "          d = super.d();\n"
+                + "          d$Memoized = true;\n"
+                + "        }\n"
+                + "      }\n"
+                + "    }\n"
+                + "    return d;\n"
+                + "  }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Arrays.asList(memoized, nullable, source))
+                .processedWith(newProcessor(new MemoizingAutoValueExtension()))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expected);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFinalMethods() {
+        MemoizedMethodGenerator.addMemoizedMethod(TypeSpec.classBuilder("Test"),
+                method("finalMethod"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsGenericMethods() {
+        MemoizedMethodGenerator.addMemoizedMethod(TypeSpec.classBuilder("Test"),
+                method("genericMethod"));
+    }
+}
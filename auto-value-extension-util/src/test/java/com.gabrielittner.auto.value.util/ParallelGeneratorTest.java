@@ -0,0 +1,64 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.testing.compile.CompilationRule;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ParallelGeneratorTest {
+
+    @Rule public CompilationRule compilationRule = new CompilationRule();
+
+    @SuppressWarnings("unused")
+    private static abstract class First {
+        public abstract int a();
+    }
+
+    @SuppressWarnings("unused")
+    private static abstract class Second {
+        public abstract String b();
+    }
+
+    @Test
+    public void rendersInOrder() {
+        PropertyModel first = model(First.class);
+        PropertyModel second = model(Second.class);
+        List<PropertyModel> models = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            models.add(i % 2 == 0 ? first : second);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> sources = ParallelGenerator.renderAll(pool, models,
+                    new ParallelGenerator.Renderer<String>() {
+                        @Override public String render(PropertyModel model) {
+                            TypeSpec type = AutoValueUtil.newTypeSpecBuilder(model,
+                                    "AutoValue_" + model.autoValueClass().simpleName(),
+                                    "$AutoValue_" + model.autoValueClass().simpleName(), true)
+                                    .build();
+                            return JavaFile.builder(model.packageName(), type).build().toString();
+                        }
+                    }, 3);
+
+            assertThat(sources).hasSize(50);
+            for (int i = 0; i < sources.size(); i++) {
+                String expected = i % 2 == 0 ? "AutoValue_First(int a)" : "AutoValue_Second(String b)";
+                assertThat(sources.get(i)).contains(expected);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private PropertyModel model(Class<?> cls) {
+        return PropertyModel.get(new TestContext(
+                compilationRule.getElements().getTypeElement(cls.getCanonicalName())));
+    }
+}
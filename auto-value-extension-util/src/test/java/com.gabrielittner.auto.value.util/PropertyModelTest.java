@@ -0,0 +1,62 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.testing.compile.CompilationRule;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeVariableName;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.List;
+import javax.lang.model.element.TypeElement;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+public class PropertyModelTest {
+
+    @Rule public CompilationRule compilationRule = new CompilationRule();
+
+    @SuppressWarnings("unused")
+    private static abstract class PropertyTestClass<T> {
+        public abstract int a();
+        @Nullable public abstract String b();
+        public abstract List<T> c();
+    }
+
+    @Retention(RUNTIME)
+    @Target(METHOD)
+    private @interface Nullable { }
+
+    @Test
+    public void model() {
+        TypeElement element = compilationRule.getElements()
+                .getTypeElement(PropertyTestClass.class.getCanonicalName());
+        TestContext context = new TestContext(element);
+
+        PropertyModel model = PropertyModel.get(context);
+        assertThat(PropertyModel.get(context)).isSameAs(model);
+
+        assertThat(model.packageName()).isEqualTo("com.gabrielittner.auto.value.util");
+        assertThat(model.typeVariables()).containsExactly(TypeVariableName.get("T"));
+        assertThat(model.properties().keySet()).containsExactly("a", "b", "c").inOrder();
+
+        PropertyModel.Property a = model.properties().get("a");
+        assertThat(a.type()).isEqualTo(TypeName.INT);
+        assertThat(a.nullable()).isFalse();
+
+        PropertyModel.Property b = model.properties().get("b");
+        assertThat(b.type()).isEqualTo(TypeName.get(String.class));
+        assertThat(b.annotations()).containsExactly("Nullable");
+        assertThat(b.nullable()).isTrue();
+
+        PropertyModel.Property c = model.properties().get("c");
+        assertThat(c.type()).isEqualTo(
+                ParameterizedTypeName.get(ClassName.get(List.class), TypeVariableName.get("T")));
+
+        assertThat(model.constructor().parameters).hasSize(3);
+    }
+}
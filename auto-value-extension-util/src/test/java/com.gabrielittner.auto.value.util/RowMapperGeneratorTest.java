@@ -0,0 +1,122 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.testing.compile.CompilationRule;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.TypeName;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import javax.lang.model.element.TypeElement;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+public class RowMapperGeneratorTest {
+
+    @Rule public CompilationRule compilationRule = new CompilationRule();
+
+    private static final ClassName CURSOR = ClassName.get("android.database", "Cursor");
+
+    private static final AccessorTable ACCESSORS = AccessorTable.builder()
+            .read(TypeName.INT, "$1L.getInt($2L)")
+            .read(ClassName.get(String.class), "$1L.getString($2L)")
+            .readNull("$1L.isNull($2L)")
+            .build();
+
+    @SuppressWarnings("unused")
+    private static abstract class RowTestClass {
+        public abstract int a();
+        @Nullable public abstract String b();
+        public abstract Integer source();
+    }
+
+    @Retention(RUNTIME)
+    @Target(METHOD)
+    private @interface Nullable { }
+
+    private PropertyModel model() {
+        TypeElement element = compilationRule.getElements()
+                .getTypeElement(RowTestClass.class.getCanonicalName());
+        return PropertyModel.get(new TestContext(element));
+    }
+
+    @Test
+    public void mapper() {
+        RowMapperGenerator generator = RowMapperGenerator.builder(CURSOR, ACCESSORS)
+                .columnIndex("$1L.getColumnIndexOrThrow($2L)")
+                .moveToNext("$1L.moveToNext()")
+                .count("$1L.getCount()")
+                .build();
+
+        String mapper = generator.generate(model(), "RowMapper", ImmutableMap.of("b", "b_column"))
+                .toString();
+
+        assertThat(mapper).isEqualTo(""
+                + "final class RowMapper {\n"
+                + "  private final int aIndex;\n"
+                + "\n"
+                + "  private final int bIndex;\n"
+                + "\n"
+                + "  private final int sourceIndex;\n"
+                + "\n"
+                + "  RowMapper(android.database.Cursor _source) {\n"
+                + "    this.aIndex = _source.getColumnIndexOrThrow(\"a\");\n"
+                + "    this.bIndex = _source.getColumnIndexOrThrow(\"b_column\");\n"
+                + "    this.sourceIndex = _source.getColumnIndexOrThrow(\"source\");\n"
+                + "  }\n"
+                + "\n"
+                + "  com.gabrielittner.auto.value.util.RowTestClass"
+                + " read(android.database.Cursor _source) {\n"
+                + "    int a = _source.getInt(this.aIndex);\n"
+                + "    java.lang.String b = (_source.isNull(this.bIndex) ? null"
+                + " : _source.getString(this.bIndex));\n"
+                + "    java.lang.Integer source = _source.getInt(this.sourceIndex);\n"
+                + "    return new com.gabrielittner.auto.value.util.AutoValue_RowTestClass(a, b,"
+                + " source);\n"
+                + "  }\n"
+                + "\n"
+                + "  java.util.List<com.gabrielittner.auto.value.util.RowTestClass>"
+                + " readAll(android.database.Cursor _source) {\n"
+                + "    java.util.List<com.gabrielittner.auto.value.util.RowTestClass> result ="
+                + " new java.util.ArrayList<com.gabrielittner.auto.value.util.RowTestClass>"
+                + "(_source.getCount());\n"
+                + "    while (_source.moveToNext()) {\n"
+                + "      result.add(read(_source));\n"
+                + "    }\n"
+                + "    return result;\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    public void escapesColumnNames() {
+        RowMapperGenerator generator = RowMapperGenerator.builder(CURSOR, ACCESSORS)
+                .columnIndex("$1L.getColumnIndexOrThrow($2L)")
+                .build();
+
+        String mapper = generator.generate(model(), "RowMapper",
+                ImmutableMap.of("a", "a\"column", "b", "b\\column")).toString();
+
+        assertThat(mapper).contains("getColumnIndexOrThrow(\"a\\\"column\");\n");
+        assertThat(mapper).contains("getColumnIndexOrThrow(\"b\\\\column\");\n");
+    }
+
+    @Test
+    public void readAllRequiresMoveToNext() {
+        RowMapperGenerator generator = RowMapperGenerator.builder(CURSOR, ACCESSORS)
+                .columnIndex("$1L.getColumnIndexOrThrow($2L)")
+                .build();
+
+        String mapper = generator.generate(model(), "RowMapper").toString();
+
+        assertThat(mapper).doesNotContain("readAll");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void columnIndexIsRequired() {
+        RowMapperGenerator.builder(CURSOR, ACCESSORS).build();
+    }
+}
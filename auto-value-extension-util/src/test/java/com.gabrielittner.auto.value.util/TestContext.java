@@ -0,0 +1,55 @@
+package com.gabrielittner.auto.value.util;
+
+import com.google.auto.common.MoreElements;
+import com.google.auto.value.extension.AutoValueExtension.Context;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+
+/** A {@link Context} for a type, used by the tests and the benchmark module. */
+public final class TestContext implements Context {
+
+    private final TypeElement autoValueClass;
+    private final ProcessingEnvironment processingEnvironment;
+    private final Map<String, ExecutableElement> properties;
+
+    public TestContext(TypeElement autoValueClass) {
+        this(autoValueClass, null);
+    }
+
+    TestContext(TypeElement autoValueClass, ProcessingEnvironment processingEnvironment) {
+        this.autoValueClass = autoValueClass;
+        this.processingEnvironment = processingEnvironment;
+        this.properties = new LinkedHashMap<>();
+        for (ExecutableElement method
+                : ElementFilter.methodsIn(autoValueClass.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.ABSTRACT)
+                    && method.getParameters().isEmpty()) {
+                properties.put(method.getSimpleName().toString(), method);
+            }
+        }
+    }
+
+    @Override public ProcessingEnvironment processingEnvironment() {
+        if (processingEnvironment == null) {
+            throw new UnsupportedOperationException();
+        }
+        return processingEnvironment;
+    }
+
+    @Override public String packageName() {
+        return MoreElements.getPackage(autoValueClass).getQualifiedName().toString();
+    }
+
+    @Override public TypeElement autoValueClass() {
+        return autoValueClass;
+    }
+
+    @Override public Map<String, ExecutableElement> properties() {
+        return properties;
+    }
+}
@@ -0,0 +1,189 @@
+package com.gabrielittner.auto.value.util;
+
+import com.gabrielittner.auto.value.util.extensions.ClassRegistryAutoValueExtension;
+import com.gabrielittner.auto.value.util.extensions.RegistryAutoValueExtension;
+import com.google.common.collect.ImmutableSet;
+import com.google.testing.compile.JavaFileObjects;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+
+import static com.google.auto.value.processor.ExtensionTestHelper.newProcessor;
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+
+public class ValueClassRegistryTest {
+
+    private static final JavaFileObject TEST = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "  public abstract Generated a();\n"
+            + "}\n"
+    );
+    private static final JavaFileObject OTHER = JavaFileObjects.forSourceString("test.Other", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Other {\n"
+            + "  public abstract int a();\n"
+            + "}\n"
+    );
+
+    @Test public void valueClassRegistry() {
+        JavaFileObject source1 = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "@AutoValue public abstract class Test {\n"
+                + "  public abstract int a();\n"
+                + "  @AutoValue public abstract static class Inner {\n"
+                + "    public abstract int a();\n"
+                + "  }\n"
+                + "}\n"
+        );
+        JavaFileObject source2 = JavaFileObjects.forSourceString("test.Other", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "@AutoValue public abstract class Other {\n"
+                + "  public abstract int a();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expected = JavaFileObjects.forSourceString("test/Values", ""
+                + "package test;\n"
+                + "import java.lang.AssertionError;\n"
+                + "import java.lang.Class;\n"
+                + "import java.lang.Object;\n"
+                + "public final class Values {\n"
+                + "  private Values() {\n"
+                + "    throw new AssertionError(\"No instances.\");\n"
+                + "  }\n"
+                + "  public static Object create(Class<?> type, int a) {\n"
+                + "    switch (type.getName()) {\n"
+                + "      case \"test.Other\":\n"
+                + "        return new AutoValue_Other(a);\n"
+                + "      case \"test.Test\":\n"
+                + "        return new AutoValue_Test(a);\n"
+                + "      case \"test.Test$Inner\":\n"
+                + "        return new AutoValue_Test_Inner(a);\n"
+                + "      default:\n"
+                + "        return null;\n"
+                + "    }\n"
+                + "  }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Arrays.asList(source1, source2))
+                .processedWith(new RoundTracker(), newProcessor(new RegistryAutoValueExtension()))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expected);
+    }
+
+    @Test public void deferredClass() {
+        // AutoValue defers Test to the second round, it needs Generated from the first
+        JavaFileObject expected = JavaFileObjects.forSourceString("test/Classes", ""
+                + "package test;\n"
+                + "import java.lang.AssertionError;\n"
+                + "import java.lang.Class;\n"
+                + "public final class Classes {\n"
+                + "  private Classes() {\n"
+                + "    throw new AssertionError(\"No instances.\");\n"
+                + "  }\n"
+                + "  public static Class<?> get(Class<?> type) {\n"
+                + "    switch (type.getName()) {\n"
+                + "      case \"test.Other\":\n"
+                + "        return AutoValue_Other.class;\n"
+                + "      case \"test.Test\":\n"
+                + "        return AutoValue_Test.class;\n"
+                + "      default:\n"
+                + "        return null;\n"
+                + "    }\n"
+                + "  }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Arrays.asList(TEST, OTHER))
+                .processedWith(new RoundTracker(), new GeneratingProcessor(),
+                        newProcessor(new ClassRegistryAutoValueExtension()))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expected);
+    }
+
+    @Test public void registeredBeforeRoundTrackerIsInitialized() {
+        // javac initializes processors when it gets to them, here after AutoValue ran
+        JavaFileObject expected = JavaFileObjects.forSourceString("test/Classes", ""
+                + "package test;\n"
+                + "import java.lang.AssertionError;\n"
+                + "import java.lang.Class;\n"
+                + "public final class Classes {\n"
+                + "  private Classes() {\n"
+                + "    throw new AssertionError(\"No instances.\");\n"
+                + "  }\n"
+                + "  public static Class<?> get(Class<?> type) {\n"
+                + "    switch (type.getName()) {\n"
+                + "      case \"test.Other\":\n"
+                + "        return AutoValue_Other.class;\n"
+                + "      default:\n"
+                + "        return null;\n"
+                + "    }\n"
+                + "  }\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Collections.singletonList(OTHER))
+                .processedWith(newProcessor(new ClassRegistryAutoValueExtension()),
+                        new RoundTracker())
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expected);
+    }
+
+    @Test public void missingRoundTracker() {
+        assertAbout(javaSources()).that(Arrays.asList(TEST, OTHER))
+                .processedWith(new GeneratingProcessor(),
+                        newProcessor(new ClassRegistryAutoValueExtension()))
+                .failsToCompile()
+                .withErrorContaining("Registry test.Classes won't be generated, RoundTracker"
+                        + " isn't running in this compilation.");
+    }
+
+    /** Generates the class {@code test.Generated} in the first round. */
+    private static final class GeneratingProcessor extends AbstractProcessor {
+        private boolean generated;
+
+        @Override public Set<String> getSupportedAnnotationTypes() {
+            return ImmutableSet.of("*");
+        }
+
+        @Override public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override public boolean process(Set<? extends TypeElement> annotations,
+                RoundEnvironment roundEnv) {
+            if (!generated) {
+                generated = true;
+                TypeSpec type = TypeSpec.classBuilder("Generated")
+                        .addModifiers(Modifier.PUBLIC)
+                        .build();
+                try {
+                    JavaFile.builder("test", type).build().writeTo(processingEnv.getFiler());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return false;
+        }
+    }
+}
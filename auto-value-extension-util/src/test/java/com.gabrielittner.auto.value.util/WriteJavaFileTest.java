@@ -0,0 +1,149 @@
+package com.gabrielittner.auto.value.util;
+
+import com.gabrielittner.auto.value.util.extensions.ExtraFileAutoValueExtension;
+import com.google.common.collect.ImmutableList;
+import com.google.testing.compile.CompilationRule;
+import com.google.testing.compile.JavaFileObjects;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager.Location;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.auto.value.processor.ExtensionTestHelper.newProcessor;
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+
+public class WriteJavaFileTest {
+
+    @Rule public CompilationRule compilationRule = new CompilationRule();
+
+    @SuppressWarnings("unused")
+    private static abstract class WriteTestClass {
+        public abstract int a();
+    }
+
+    @SuppressWarnings("unused")
+    private static abstract class OtherWriteTestClass {
+        public abstract int a();
+    }
+
+    private TypeElement element(Class<?> cls) {
+        return compilationRule.getElements().getTypeElement(cls.getCanonicalName());
+    }
+
+    @Test public void writesExtraFile() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+                + "package test;\n"
+                + "import com.google.auto.value.AutoValue;\n"
+                + "@AutoValue public abstract class Test {\n"
+                + "  public abstract int a();\n"
+                + "}\n"
+        );
+
+        JavaFileObject expected = JavaFileObjects.forSourceString("test/AutoValue_Test_Extra", ""
+                + "package test;\n"
+                + "final class AutoValue_Test_Extra {\n"
+                + "}\n"
+        );
+
+        assertAbout(javaSources()).that(Collections.singletonList(source))
+                .processedWith(newProcessor(new ExtraFileAutoValueExtension()))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(expected);
+    }
+
+    @Test public void contextIsOriginatingElement() throws IOException {
+        RecordingFiler filer = new RecordingFiler();
+        TypeElement autoValueClass = element(WriteTestClass.class);
+        TypeElement other = element(OtherWriteTestClass.class);
+        TypeSpec extra = TypeSpec.classBuilder("Extra").build();
+
+        AutoValueUtil.writeJavaFile(new TestContext(autoValueClass, processingEnv(filer)),
+                JavaFile.builder("test", extra).build(), other);
+
+        assertThat(filer.originatingElements.keySet()).containsExactly("test.Extra");
+        assertThat(filer.originatingElements.get("test.Extra"))
+                .containsExactly(autoValueClass, other).inOrder();
+    }
+
+    @Test public void typeSpecOriginatingElementsAreKept() throws IOException {
+        RecordingFiler filer = new RecordingFiler();
+        TypeElement autoValueClass = element(WriteTestClass.class);
+        TypeElement other = element(OtherWriteTestClass.class);
+        TypeSpec extra = TypeSpec.classBuilder("Extra")
+                .addOriginatingElement(other)
+                .build();
+
+        AutoValueUtil.writeJavaFile(filer, JavaFile.builder("", extra).build(),
+                ImmutableList.of(autoValueClass, other));
+
+        assertThat(filer.originatingElements.get("Extra"))
+                .containsExactly(other, autoValueClass).inOrder();
+    }
+
+    private static ProcessingEnvironment processingEnv(final Filer filer) {
+        return (ProcessingEnvironment) Proxy.newProxyInstance(
+                WriteJavaFileTest.class.getClassLoader(),
+                new Class<?>[] { ProcessingEnvironment.class }, new InvocationHandler() {
+                    @Override public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getFiler")) {
+                            return filer;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /** Records the originating elements of every source file and keeps its content in memory. */
+    private static final class RecordingFiler implements Filer {
+        final Map<String, List<Element>> originatingElements = new LinkedHashMap<>();
+
+        @Override public JavaFileObject createSourceFile(CharSequence name,
+                Element... originatingElements) {
+            this.originatingElements.put(name.toString(), Arrays.asList(originatingElements));
+            URI uri = URI.create("mem:///" + name.toString().replace('.', '/') + ".java");
+            return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+                @Override public Writer openWriter() {
+                    return new StringWriter();
+                }
+            };
+        }
+
+        @Override public JavaFileObject createClassFile(CharSequence name,
+                Element... originatingElements) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public FileObject createResource(Location location, CharSequence pkg,
+                CharSequence relativeName, Element... originatingElements) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public FileObject getResource(Location location, CharSequence pkg,
+                CharSequence relativeName) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
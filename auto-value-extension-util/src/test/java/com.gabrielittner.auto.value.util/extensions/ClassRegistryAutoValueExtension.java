@@ -0,0 +1,29 @@
+package com.gabrielittner.auto.value.util.extensions;
+
+import com.gabrielittner.auto.value.util.ValueClassRegistry;
+import com.google.auto.service.AutoService;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.WildcardTypeName;
+
+/** Registers the final class of every AutoValue class, whatever its properties are. */
+@AutoService(AutoValueExtension.class)
+public class ClassRegistryAutoValueExtension extends SimpleAutoValueExtension {
+
+    private static final ValueClassRegistry REGISTRY =
+            ValueClassRegistry.builder(ClassName.get("test", "Classes"))
+                    .method("get", ParameterizedTypeName.get(ClassName.get(Class.class),
+                            WildcardTypeName.subtypeOf(Object.class)))
+                    .build();
+
+    @Override public String generateClass(Context context, String className,
+            String classToExtend, boolean isFinal) {
+        if (isFinal) {
+            REGISTRY.register(context,
+                    CodeBlock.of("$T.class", ClassName.get(context.packageName(), className)));
+        }
+        return super.generateClass(context, className, classToExtend, isFinal);
+    }
+}
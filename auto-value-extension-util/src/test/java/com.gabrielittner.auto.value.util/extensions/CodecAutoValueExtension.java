@@ -0,0 +1,32 @@
+package com.gabrielittner.auto.value.util.extensions;
+
+import com.gabrielittner.auto.value.util.AutoValueUtil;
+import com.gabrielittner.auto.value.util.ByteBufferCodecGenerator;
+import com.gabrielittner.auto.value.util.PropertyModel;
+import com.google.auto.service.AutoService;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+
+@AutoService(AutoValueExtension.class)
+public class CodecAutoValueExtension extends SimpleAutoValueExtension {
+
+    @Override public boolean applicable(Context context) {
+        return ByteBufferCodecGenerator.supports(PropertyModel.get(context));
+    }
+
+    @Override public String generateClass(Context context, String className,
+            String classToExtend, boolean isFinal) {
+        PropertyModel model = PropertyModel.get(context);
+        TypeSpec codec = ByteBufferCodecGenerator.generate(model,
+                model.autoValueClass().simpleName() + "Codec");
+        try {
+            AutoValueUtil.writeJavaFile(context,
+                    JavaFile.builder(context.packageName(), codec).build());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return super.generateClass(context, className, classToExtend, isFinal);
+    }
+}
@@ -0,0 +1,28 @@
+package com.gabrielittner.auto.value.util.extensions;
+
+import com.gabrielittner.auto.value.util.AutoValueUtil;
+import com.google.auto.service.AutoService;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+
+import static javax.lang.model.element.Modifier.FINAL;
+
+@AutoService(AutoValueExtension.class)
+public class ExtraFileAutoValueExtension extends SimpleAutoValueExtension {
+
+    @Override public String generateClass(Context context, String className,
+            String classToExtend, boolean isFinal) {
+        TypeSpec extra = TypeSpec.classBuilder(className + "_Extra")
+                .addModifiers(FINAL)
+                .build();
+        try {
+            AutoValueUtil.writeJavaFile(context,
+                    JavaFile.builder(context.packageName(), extra).build());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return super.generateClass(context, className, classToExtend, isFinal);
+    }
+}
@@ -0,0 +1,45 @@
+package com.gabrielittner.auto.value.util.extensions;
+
+import com.gabrielittner.auto.value.util.PropertyModel;
+import com.google.auto.service.AutoService;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+
+import static com.gabrielittner.auto.value.util.AutoValueUtil.newTypeSpecBuilder;
+import static com.gabrielittner.auto.value.util.InternerGenerator.addBoundedInterner;
+import static com.gabrielittner.auto.value.util.InternerGenerator.addCanonicalFactory;
+import static com.gabrielittner.auto.value.util.InternerGenerator.addWeakInterner;
+
+@AutoService(AutoValueExtension.class)
+public class InterningAutoValueExtension extends AutoValueExtension {
+
+    private final int maximumSize;
+
+    public InterningAutoValueExtension() {
+        this(0);
+    }
+
+    public InterningAutoValueExtension(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    @Override public boolean applicable(Context context) {
+        return true;
+    }
+
+    @Override public String generateClass(Context context, String className,
+            String classToExtend, boolean isFinal) {
+        PropertyModel model = PropertyModel.get(context);
+        TypeSpec.Builder subclass = newTypeSpecBuilder(model, className, classToExtend, isFinal);
+        if (maximumSize > 0) {
+            addBoundedInterner(model, subclass, maximumSize);
+        } else {
+            addWeakInterner(model, subclass);
+        }
+        addCanonicalFactory(model, subclass, "create");
+        return JavaFile.builder(context.packageName(), subclass.build())
+                .build()
+                .toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.gabrielittner.auto.value.util.extensions;
+
+import com.gabrielittner.auto.value.util.AccessorTable;
+import com.gabrielittner.auto.value.util.AutoValueUtil;
+import com.gabrielittner.auto.value.util.LazyValueGenerator;
+import com.gabrielittner.auto.value.util.PropertyModel;
+import com.google.auto.service.AutoService;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Writes a lazy variant that decodes properties from a {@code String[]} row. */
+@AutoService(AutoValueExtension.class)
+public class LazyAutoValueExtension extends SimpleAutoValueExtension {
+
+    private static final AccessorTable DECODERS = AccessorTable.builder()
+            .read(TypeName.INT, "Integer.parseInt($1L[$2L])")
+            .read(ClassName.get(String.class), "$1L[$2L]")
+            .readNull("$1L[$2L] == null")
+            .build();
+
+    @Override public String generateClass(Context context, String className,
+            String classToExtend, boolean isFinal) {
+        PropertyModel model = PropertyModel.get(context);
+        Map<String, Integer> columns = new HashMap<>();
+        for (String property : model.properties().keySet()) {
+            columns.put(property, columns.size());
+        }
+        TypeSpec lazy = LazyValueGenerator.of(ArrayTypeName.of(String.class), DECODERS)
+                .generate(model, "Lazy" + model.autoValueClass().simpleName(), columns);
+        try {
+            AutoValueUtil.writeJavaFile(context,
+                    JavaFile.builder(context.packageName(), lazy).build());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return super.generateClass(context, className, classToExtend, isFinal);
+    }
+}
@@ -0,0 +1,27 @@
+package com.gabrielittner.auto.value.util.extensions;
+
+import com.google.auto.service.AutoService;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+
+import static com.gabrielittner.auto.value.util.AutoValueUtil.newTypeSpecBuilder;
+import static com.gabrielittner.auto.value.util.MemoizedMethodGenerator.addMemoizedMethods;
+
+@AutoService(AutoValueExtension.class)
+public class MemoizingAutoValueExtension extends AutoValueExtension {
+
+    @Override public boolean applicable(Context context) {
+        return true;
+    }
+
+    @Override public String generateClass(Context context, String className,
+            String classToExtend, boolean isFinal) {
+        TypeSpec subclass = addMemoizedMethods(context,
+                newTypeSpecBuilder(context, className, classToExtend, isFinal), "Memoized")
+                .build();
+        return JavaFile.builder(context.packageName(), subclass)
+                .build()
+                .toString();
+    }
+}
@@ -0,0 +1,27 @@
+package com.gabrielittner.auto.value.util.extensions;
+
+import com.gabrielittner.auto.value.util.ValueClassRegistry;
+import com.google.auto.service.AutoService;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
+
+@AutoService(AutoValueExtension.class)
+public class RegistryAutoValueExtension extends SimpleAutoValueExtension {
+
+    private static final ValueClassRegistry REGISTRY =
+            ValueClassRegistry.builder(ClassName.get("test", "Values"))
+                    .addParameter(TypeName.INT, "a")
+                    .build();
+
+    @Override public String generateClass(Context context, String className,
+            String classToExtend, boolean isFinal) {
+        // only the final class is constructed by the registry
+        if (isFinal) {
+            REGISTRY.register(context,
+                    CodeBlock.of("new $T(a)", ClassName.get(context.packageName(), className)));
+        }
+        return super.generateClass(context, className, classToExtend, isFinal);
+    }
+}
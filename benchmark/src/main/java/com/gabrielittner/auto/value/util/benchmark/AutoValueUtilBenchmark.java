@@ -0,0 +1,57 @@
+package com.gabrielittner.auto.value.util.benchmark;
+
+import com.gabrielittner.auto.value.util.AutoValueUtil;
+import com.gabrielittner.auto.value.util.TestContext;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AutoValueUtilBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int properties;
+
+    @Param({"1", "8"})
+    public int depth;
+
+    private Compilation compilation;
+    private TestContext context;
+    private Object[] names;
+
+    @Setup
+    public void setUp() throws IOException {
+        compilation = Compilation.analyze(
+                SyntheticSources.valueClass("Value", properties, depth));
+        context = new TestContext(compilation.typeElement("Value"));
+        names = context.properties().keySet().toArray();
+    }
+
+    @Benchmark
+    public TypeSpec newTypeSpecBuilder() {
+        return AutoValueUtil.newTypeSpecBuilder(context, "AutoValue_Value", "$AutoValue_Value",
+                true).build();
+    }
+
+    @Benchmark
+    public CodeBlock newFinalClassConstructorCall() {
+        return AutoValueUtil.newFinalClassConstructorCall(context, names);
+    }
+}
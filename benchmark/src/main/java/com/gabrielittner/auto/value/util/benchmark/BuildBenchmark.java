@@ -0,0 +1,219 @@
+package com.gabrielittner.auto.value.util.benchmark;
+
+import com.gabrielittner.auto.value.util.RoundTracker;
+import com.gabrielittner.auto.value.util.extensions.CallingConstructorAutoValueExtension;
+import com.gabrielittner.auto.value.util.extensions.SimpleAutoValueExtension;
+import com.google.auto.value.processor.ExtensionTestHelper;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles a synthetic corpus of {@code @AutoValue} classes in-process with
+ * {@code AutoValueProcessor} and the sample extensions and reports the total compile time, the
+ * time spent in annotation processing, per class, and the peak heap usage:
+ * <pre>
+ * ./gradlew :benchmark:buildBenchmark -Pbuild.classes=5000
+ * </pre>
+ * Arguments are {@code [classes] [maxProperties] [depth] [warmup] [iterations]}.
+ */
+public final class BuildBenchmark {
+
+    private static final long SEED = 42;
+
+    public static void main(String[] args) throws IOException {
+        int classes = intArg(args, 0, 5000);
+        int maxProperties = intArg(args, 1, 20);
+        int depth = intArg(args, 2, 4);
+        int warmup = intArg(args, 3, 2);
+        int iterations = intArg(args, 4, 5);
+
+        List<JavaFileObject> sources =
+                SyntheticSources.autoValueCorpus(classes, maxProperties, depth, SEED);
+        System.out.printf(Locale.US, "%d classes, up to %d properties, depth %d%n", classes,
+                maxProperties, depth);
+
+        for (int i = 0; i < warmup; i++) {
+            Result result = compile(sources);
+            System.out.printf(Locale.US, "warmup %d: %s%n", i + 1, result.format(classes));
+        }
+        long totalNanos = 0;
+        long processingNanos = 0;
+        long peakHeap = 0;
+        for (int i = 0; i < iterations; i++) {
+            Result result = compile(sources);
+            System.out.printf(Locale.US, "iteration %d: %s%n", i + 1, result.format(classes));
+            totalNanos += result.totalNanos;
+            processingNanos += result.processingNanos;
+            peakHeap = Math.max(peakHeap, result.peakHeap);
+        }
+        if (iterations > 0) {
+            Result average = new Result(totalNanos / iterations, processingNanos / iterations,
+                    peakHeap);
+            System.out.printf(Locale.US, "average: %s%n", average.format(classes));
+        }
+    }
+
+    private static Result compile(List<JavaFileObject> sources) throws IOException {
+        Path output = Files.createTempDirectory("build-benchmark");
+        try {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            File directory = output.toFile();
+            // the auto-value jar contains sources, don't let javac compile those instead
+            List<String> options = Arrays.asList("-nowarn", "-implicit:none", "-sourcepath", "",
+                    "-classpath", System.getProperty("java.class.path"),
+                    "-d", directory.getPath(), "-s", directory.getPath());
+            JavaCompiler.CompilationTask task =
+                    compiler.getTask(null, null, diagnostics, options, null, sources);
+            TimedProcessor autoValue = new TimedProcessor(ExtensionTestHelper.newProcessor(
+                    new SimpleAutoValueExtension(), new CallingConstructorAutoValueExtension()));
+            TimedProcessor roundTracker = new TimedProcessor(new RoundTracker());
+            task.setProcessors(Arrays.<Processor>asList(roundTracker, autoValue));
+
+            System.gc();
+            resetPeakHeap();
+            long start = System.nanoTime();
+            boolean success = task.call();
+            long totalNanos = System.nanoTime() - start;
+            if (!success) {
+                throw new IllegalStateException(diagnostics.getDiagnostics().toString());
+            }
+            return new Result(totalNanos, autoValue.nanos + roundTracker.nanos, peakHeap());
+        } finally {
+            deleteRecursively(output);
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // the sum of the pools' peaks, which can be more than the heap ever used at once
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                    throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult postVisitDirectory(Path dir, IOException e)
+                    throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    private static final class Result {
+        final long totalNanos;
+        final long processingNanos;
+        final long peakHeap;
+
+        Result(long totalNanos, long processingNanos, long peakHeap) {
+            this.totalNanos = totalNanos;
+            this.processingNanos = processingNanos;
+            this.peakHeap = peakHeap;
+        }
+
+        String format(int classes) {
+            return String.format(Locale.US,
+                    "total %d ms, processing %d ms (%.1f us/class), peak heap %d MB",
+                    TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                    TimeUnit.NANOSECONDS.toMillis(processingNanos),
+                    processingNanos / 1000.0 / classes,
+                    peakHeap / (1024 * 1024));
+        }
+    }
+
+    /** Measures the time javac spends in a processor. */
+    private static final class TimedProcessor implements Processor {
+        private final Processor delegate;
+        long nanos;
+
+        TimedProcessor(Processor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override public Set<String> getSupportedOptions() {
+            return delegate.getSupportedOptions();
+        }
+
+        @Override public Set<String> getSupportedAnnotationTypes() {
+            return delegate.getSupportedAnnotationTypes();
+        }
+
+        @Override public SourceVersion getSupportedSourceVersion() {
+            return delegate.getSupportedSourceVersion();
+        }
+
+        @Override public void init(ProcessingEnvironment processingEnv) {
+            long start = System.nanoTime();
+            delegate.init(processingEnv);
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override public boolean process(Set<? extends TypeElement> annotations,
+                RoundEnvironment roundEnv) {
+            long start = System.nanoTime();
+            try {
+                return delegate.process(annotations, roundEnv);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override public Iterable<? extends Completion> getCompletions(Element element,
+                AnnotationMirror annotation, ExecutableElement member, String userText) {
+            return delegate.getCompletions(element, annotation, member, userText);
+        }
+    }
+
+    private BuildBenchmark() {
+        throw new AssertionError("No instances.");
+    }
+}
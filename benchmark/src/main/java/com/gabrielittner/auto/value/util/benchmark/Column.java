@@ -0,0 +1,14 @@
+package com.gabrielittner.auto.value.util.benchmark;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+@Retention(CLASS)
+@Target(METHOD)
+public @interface Column {
+    String value();
+    boolean nullable() default false;
+}
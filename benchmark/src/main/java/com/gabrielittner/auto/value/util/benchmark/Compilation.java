@@ -0,0 +1,52 @@
+package com.gabrielittner.auto.value.util.benchmark;
+
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Analyzes sources with an in-process javac and keeps the resulting {@link Elements} and
+ * {@link Types} usable for as long as this object is reachable.
+ */
+final class Compilation {
+
+    private final JavacTask task;
+
+    private Compilation(JavacTask task) {
+        this.task = task;
+    }
+
+    static Compilation analyze(List<JavaFileObject> sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = Arrays.asList(
+                "-proc:none", "-classpath", System.getProperty("java.class.path"));
+        JavacTask task = (JavacTask) compiler.getTask(null, null, diagnostics, options, null,
+                sources);
+        task.analyze();
+        if (!diagnostics.getDiagnostics().isEmpty()) {
+            throw new IllegalStateException(diagnostics.getDiagnostics().toString());
+        }
+        return new Compilation(task);
+    }
+
+    Elements elements() {
+        return task.getElements();
+    }
+
+    Types types() {
+        return task.getTypes();
+    }
+
+    TypeElement typeElement(String name) {
+        return task.getElements().getTypeElement(SyntheticSources.PACKAGE + '.' + name);
+    }
+}
@@ -0,0 +1,88 @@
+package com.gabrielittner.auto.value.util.benchmark;
+
+import com.gabrielittner.auto.value.util.ElementUtil;
+import com.google.auto.common.MoreElements;
+import com.google.common.collect.ImmutableSet;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.TypeName;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ElementUtilBenchmark {
+
+    private static final TypeName STRING = ClassName.get(String.class);
+    private static final TypeName LIST = ClassName.get(List.class);
+
+    @Param({"10", "100", "1000"})
+    public int properties;
+
+    @Param({"1", "2", "4", "8"})
+    public int depth;
+
+    private Compilation compilation;
+    private Elements elements;
+    private TypeElement valueClass;
+    private TypeName valueClassName;
+    private ExecutableElement lastProperty;
+
+    @Setup
+    public void setUp() throws IOException {
+        compilation = Compilation.analyze(
+                SyntheticSources.valueClass("Value", properties, depth));
+        elements = compilation.elements();
+        valueClass = compilation.typeElement("Value");
+        valueClassName = ClassName.get(valueClass);
+        // lookups without Elements are cached for the compilation ElementUtil was passed last
+        ElementUtil.getLocalAndInheritedMethods(elements, valueClass);
+        List<ExecutableElement> methods = ElementFilter.methodsIn(valueClass.getEnclosedElements());
+        lastProperty = methods.get(methods.size() - 1);
+    }
+
+    @Benchmark
+    public ExecutableElement getAbstractMethod() {
+        // no match, so every candidate has to be considered
+        return ElementUtil.getAbstractMethod(elements, valueClass, STRING, LIST);
+    }
+
+    @Benchmark
+    public ImmutableSet<ExecutableElement> getLocalAndInheritedMethodsUncached() {
+        return MoreElements.getLocalAndInheritedMethods(valueClass, elements);
+    }
+
+    @Benchmark
+    public ExecutableElement getStaticMethod() {
+        return ElementUtil.getStaticMethod(valueClass, STRING, valueClassName);
+    }
+
+    @Benchmark
+    public boolean hasAnnotationWithName() {
+        return ElementUtil.hasAnnotationWithName(lastProperty, "Nullable");
+    }
+
+    @Benchmark
+    public Object getAnnotationValue() {
+        return ElementUtil.getAnnotationValue(lastProperty, Column.class, "value");
+    }
+}
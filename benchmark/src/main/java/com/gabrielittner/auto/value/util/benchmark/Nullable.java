@@ -0,0 +1,13 @@
+package com.gabrielittner.auto.value.util.benchmark;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+@Retention(CLASS)
+@Target({METHOD, PARAMETER})
+public @interface Nullable {
+}
@@ -0,0 +1,122 @@
+package com.gabrielittner.auto.value.util.benchmark;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Generates value classes with a configurable number of properties on top of an interface
+ * hierarchy of a configurable depth.
+ */
+final class SyntheticSources {
+
+    static final String PACKAGE = "synthetic";
+
+    private static final String[] TYPES = {
+            "int", "String", "long", "java.util.List<String>", "boolean", "double"
+    };
+
+    static List<JavaFileObject> valueClass(String name, int properties, int depth) {
+        List<JavaFileObject> sources = new ArrayList<>(depth + 1);
+        for (int level = 1; level <= depth; level++) {
+            sources.add(levelInterface(level));
+        }
+        StringBuilder source = new StringBuilder()
+                .append("package ").append(PACKAGE).append(";\n")
+                .append("public abstract class ").append(name)
+                .append(" implements Level").append(depth).append(" {\n")
+                .append("  public static ").append(name).append(" create(String s) {\n")
+                .append("    return null;\n")
+                .append("  }\n");
+        for (int i = 0; i < properties; i++) {
+            if (i % 3 == 0) {
+                source.append("  @").append(Nullable.class.getCanonicalName()).append('\n');
+            }
+            source.append("  @").append(Column.class.getCanonicalName())
+                    .append("(\"column_").append(i).append("\")\n")
+                    .append("  public abstract ").append(TYPES[i % TYPES.length])
+                    .append(" property").append(i).append("();\n");
+        }
+        source.append("}\n");
+        sources.add(source(name, source.toString()));
+        return sources;
+    }
+
+    /**
+     * Generates {@code classes} {@code @AutoValue} classes with up to {@code maxProperties}
+     * properties. Every fourth class is generic and classes implement the level interfaces of
+     * up to {@code depth}, so some of their properties are inherited.
+     */
+    static List<JavaFileObject> autoValueCorpus(int classes, int maxProperties, int depth,
+            long seed) {
+        Random random = new Random(seed);
+        List<JavaFileObject> sources = new ArrayList<>(classes + depth);
+        for (int level = 1; level <= depth; level++) {
+            sources.add(levelInterface(level));
+        }
+        for (int c = 0; c < classes; c++) {
+            String name = "Value" + c;
+            boolean generic = c % 4 == 3;
+            int level = random.nextInt(depth + 1);
+            StringBuilder source = new StringBuilder()
+                    .append("package ").append(PACKAGE).append(";\n")
+                    .append("@com.google.auto.value.AutoValue\n")
+                    .append("public abstract class ").append(name);
+            if (generic) {
+                source.append("<T extends Comparable<T>>");
+            }
+            if (level > 0) {
+                source.append(" implements Level").append(level);
+            }
+            source.append(" {\n");
+            int properties = 1 + random.nextInt(maxProperties);
+            for (int i = 0; i < properties; i++) {
+                if (i % 3 == 0) {
+                    source.append("  @").append(Nullable.class.getCanonicalName()).append('\n');
+                }
+                String type = generic && i % 2 == 0 ? "T" : TYPES[i % TYPES.length];
+                if (i % 3 == 0 && Character.isLowerCase(type.charAt(0))) {
+                    type = "String";
+                }
+                source.append("  public abstract ").append(type)
+                        .append(" property").append(i).append("();\n");
+            }
+            source.append("}\n");
+            sources.add(source(name, source.toString()));
+        }
+        return sources;
+    }
+
+    private static JavaFileObject levelInterface(int level) {
+        StringBuilder source = new StringBuilder()
+                .append("package ").append(PACKAGE).append(";\n")
+                .append("public interface Level").append(level);
+        if (level > 1) {
+            source.append(" extends Level").append(level - 1);
+        }
+        source.append(" {\n");
+        for (int i = 0; i < 4; i++) {
+            source.append("  ").append(TYPES[i % TYPES.length])
+                    .append(" level").append(level).append('_').append(i).append("();\n");
+        }
+        source.append("}\n");
+        return source("Level" + level, source.toString());
+    }
+
+    static JavaFileObject source(String name, final String content) {
+        String path = PACKAGE + '/' + name + JavaFileObject.Kind.SOURCE.extension;
+        return new SimpleJavaFileObject(URI.create("string:///" + path),
+                JavaFileObject.Kind.SOURCE) {
+            @Override public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    private SyntheticSources() {
+        throw new AssertionError("No instances.");
+    }
+}